@@ -75,6 +75,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class MainActivity extends AppCompatActivity {
@@ -125,6 +127,9 @@ public class MainActivity extends AppCompatActivity {
     @Nullable
     private BottomSheetDialog mServiceSettingsDialog;
 
+    @Nullable
+    private AlertDialog mServiceStatsDialog;
+
     private MaterialToolbar mServiceToolbarView;
 
     private MaterialTextView mServiceStatusView;
@@ -303,6 +308,7 @@ public class MainActivity extends AppCompatActivity {
             }
             return true;
         });
+        mServiceStatsView.setOnClickListener(v -> showServiceStatsDialog());
         mDiscoveryToolbarView.getMenu().findItem(R.id.search).setOnMenuItemClickListener(item -> {
             final boolean isEnabled = !Preferences.get().isDiscoveryEnabled();
             Preferences.get().setDiscoveryEnabled(isEnabled);
@@ -358,6 +364,11 @@ public class MainActivity extends AppCompatActivity {
             mServiceSettingsDialog.dismiss();
             mServiceSettingsDialog = null;
         }
+
+        if (mServiceStatsDialog != null) {
+            mServiceStatsDialog.dismiss();
+            mServiceStatsDialog = null;
+        }
     }
 
     private void onServerStarted() {
@@ -414,6 +425,59 @@ public class MainActivity extends AppCompatActivity {
             mServerStats == null ? 0 : mServerStats.getTransports().size(),
             Formatter.formatFileSize(this, mServerStats == null ? 0L : mServerStats.getOutboundDataRate())));
         mServiceStatsView.setEnabled(mServiceStatus == SERVICE_STATUS_ONLINE);
+
+        if (mServiceStatsDialog != null) {
+            if (mServiceStatus == SERVICE_STATUS_ONLINE) {
+                mServiceStatsDialog.setMessage(getTransportStatsText());
+            } else {
+                mServiceStatsDialog.dismiss();
+            }
+        }
+    }
+
+    private void showServiceStatsDialog() {
+        if (mServiceStatsDialog != null) {
+            mServiceStatsDialog.dismiss();
+        }
+
+        mServiceStatsDialog = new MaterialAlertDialogBuilder(this)
+            .setTitle(R.string.transport_stats_title)
+            .setMessage(getTransportStatsText())
+            .setPositiveButton(android.R.string.ok, null)
+            .setOnDismissListener(dialog -> mServiceStatsDialog = null)
+            .show();
+    }
+
+    @NonNull
+    private String getTransportStatsText() {
+        final List<LssServerStats.TransportStats> transports =
+            mServerStats == null ? List.of() : mServerStats.getTransports();
+        if (transports.isEmpty()) {
+            return getString(R.string.transport_stats_empty);
+        }
+
+        return transports.stream()
+            .map(this::getTransportStatsText)
+            .collect(Collectors.joining("\n\n"));
+    }
+
+    @NonNull
+    private String getTransportStatsText(@NonNull final LssServerStats.TransportStats transport) {
+        final String text = getString(R.string.transport_stats, transport.getRemoteAddress(),
+            transport.getFrameRate(), transport.getSentFrameCount(), transport.getDroppedFrameCount(),
+            TimeUnit.NANOSECONDS.toMillis(transport.getStallTime()),
+            Formatter.formatFileSize(this, transport.getOutboundDataRate()),
+            Formatter.formatFileSize(this, transport.getFlowControlWindow()));
+        if (transport.getLatencyP50() == 0L) {
+            return text;
+        }
+
+        return text + "\n" + getString(R.string.transport_latency_stats,
+            TimeUnit.NANOSECONDS.toMillis(transport.getLatencyP50()),
+            TimeUnit.NANOSECONDS.toMillis(transport.getLatencyP95()),
+            TimeUnit.NANOSECONDS.toMillis(transport.getLatencyP99()),
+            TimeUnit.NANOSECONDS.toMillis(transport.getDecodeLatency()),
+            TimeUnit.NANOSECONDS.toMillis(transport.getRoundTripTime()));
     }
 
     private void updateDiscoveryView() {
@@ -604,6 +668,29 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        final MaterialSwitch parallelEncodingSettingView =
+            settingsDialog.findViewById(R.id.parallel_encoding_setting);
+        parallelEncodingSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (Preferences.get().isProjectionParallelEncoding() != isChecked) {
+                Preferences.get().setProjectionParallelEncoding(isChecked);
+            }
+        });
+
+        final MaterialSwitch multicastSettingView = settingsDialog.findViewById(R.id.multicast_setting);
+        multicastSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (Preferences.get().isProjectionMulticast() != isChecked) {
+                Preferences.get().setProjectionMulticast(isChecked);
+            }
+        });
+
+        final MaterialSwitch socketTransportSettingView =
+            settingsDialog.findViewById(R.id.socket_transport_setting);
+        socketTransportSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (Preferences.get().isProjectionSocketTransport() != isChecked) {
+                Preferences.get().setProjectionSocketTransport(isChecked);
+            }
+        });
+
         final MaterialSwitch secureSettingView = settingsDialog.findViewById(R.id.secure_setting);
         secureSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
             if (Preferences.get().isProjectionSecure() != isChecked) {
@@ -611,6 +698,16 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        final NumberPicker flowControlModeSettingView = settingsDialog.findViewById(R.id.flow_control_mode_setting);
+        flowControlModeSettingView.setDisplayedValues(getResources().getStringArray(R.array.flow_control_modes));
+        flowControlModeSettingView.setMinValue(Constants.FLOW_CONTROL_MODE_AUTO);
+        flowControlModeSettingView.setMaxValue(Constants.FLOW_CONTROL_MODE_HIGH_THROUGHPUT);
+        flowControlModeSettingView.setOnValueChangedListener((picker, oldVal, newVal) -> {
+            if (Preferences.get().getProjectionFlowControlMode() != newVal) {
+                Preferences.get().setProjectionFlowControlMode(newVal);
+            }
+        });
+
         final NumberPicker portSettingView = settingsDialog.findViewById(R.id.port_setting);
         portSettingView.setValue(MIN_SERVER_PORT);
         portSettingView.setMinValue(MIN_SERVER_PORT);
@@ -622,6 +719,40 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        final MaterialSwitch mjpegServerSettingView = settingsDialog.findViewById(R.id.mjpeg_server_setting);
+        mjpegServerSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (Preferences.get().isMjpegServerEnabled() != isChecked) {
+                Preferences.get().setMjpegServerEnabled(isChecked);
+            }
+        });
+
+        final NumberPicker mjpegPortSettingView = settingsDialog.findViewById(R.id.mjpeg_port_setting);
+        mjpegPortSettingView.setValue(MIN_SERVER_PORT);
+        mjpegPortSettingView.setMinValue(MIN_SERVER_PORT);
+        mjpegPortSettingView.setMaxValue(MAX_SERVER_PORT);
+        mjpegPortSettingView.setOnValueChangedListener((picker, oldVal, newVal) -> {
+            if (Preferences.get().getMjpegServerPort() != newVal) {
+                Preferences.get().setMjpegServerPort(newVal);
+            }
+        });
+
+        final MaterialSwitch metricsServerSettingView = settingsDialog.findViewById(R.id.metrics_server_setting);
+        metricsServerSettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (Preferences.get().isMetricsServerEnabled() != isChecked) {
+                Preferences.get().setMetricsServerEnabled(isChecked);
+            }
+        });
+
+        final NumberPicker metricsPortSettingView = settingsDialog.findViewById(R.id.metrics_port_setting);
+        metricsPortSettingView.setValue(MIN_SERVER_PORT);
+        metricsPortSettingView.setMinValue(MIN_SERVER_PORT);
+        metricsPortSettingView.setMaxValue(MAX_SERVER_PORT);
+        metricsPortSettingView.setOnValueChangedListener((picker, oldVal, newVal) -> {
+            if (Preferences.get().getMetricsServerPort() != newVal) {
+                Preferences.get().setMetricsServerPort(newVal);
+            }
+        });
+
         settingsDialog.setOnShowListener(dialog -> {
             settingsDialog.getBehavior().setState(BottomSheetBehavior.STATE_EXPANDED);
             qualitySettingView.setValue(Preferences.get().getProjectionQuality());
@@ -629,9 +760,22 @@ public class MainActivity extends AppCompatActivity {
             frameRateSettingView.setValue(Preferences.get().getProjectionFrameRate());
             keepScreenOnSettingView.setChecked(Preferences.get().isProjectionKeepScreenOn());
             keepScreenOnSettingView.jumpDrawablesToCurrentState();
+            parallelEncodingSettingView.setChecked(Preferences.get().isProjectionParallelEncoding());
+            parallelEncodingSettingView.jumpDrawablesToCurrentState();
+            multicastSettingView.setChecked(Preferences.get().isProjectionMulticast());
+            multicastSettingView.jumpDrawablesToCurrentState();
+            socketTransportSettingView.setChecked(Preferences.get().isProjectionSocketTransport());
+            socketTransportSettingView.jumpDrawablesToCurrentState();
             secureSettingView.setChecked(Preferences.get().isProjectionSecure());
             secureSettingView.jumpDrawablesToCurrentState();
+            flowControlModeSettingView.setValue(Preferences.get().getProjectionFlowControlMode());
             portSettingView.setValue(Preferences.get().getServerPort());
+            mjpegServerSettingView.setChecked(Preferences.get().isMjpegServerEnabled());
+            mjpegServerSettingView.jumpDrawablesToCurrentState();
+            mjpegPortSettingView.setValue(Preferences.get().getMjpegServerPort());
+            metricsServerSettingView.setChecked(Preferences.get().isMetricsServerEnabled());
+            metricsServerSettingView.jumpDrawablesToCurrentState();
+            metricsPortSettingView.setValue(Preferences.get().getMetricsServerPort());
         });
 
         return settingsDialog;
@@ -0,0 +1,48 @@
+package com.obby.android.localscreenshare.capture;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class FrameRateGovernor {
+    private static final int MIN_FRAME_RATE = 2;
+
+    private static final float STATIC_FRAME_DECAY_FACTOR = 0.8f;
+
+    private static final long NANOS_PER_SECOND = Duration.ofSeconds(1L).toNanos();
+
+    private volatile float mFrameRateFactor = 1f;
+
+    @NonNull
+    private final AtomicLong mCollectionTimestamp = new AtomicLong(SystemClock.elapsedRealtimeNanos());
+
+    @NonNull
+    private final AtomicLong mFrameCount = new AtomicLong();
+
+    public long getFrameInterval(final int maxFrameRate) {
+        final float frameRate = Math.max(Math.min(MIN_FRAME_RATE, maxFrameRate), maxFrameRate * mFrameRateFactor);
+        return (long) (NANOS_PER_SECOND / frameRate);
+    }
+
+    public void update(final boolean isChanged) {
+        mFrameCount.incrementAndGet();
+        mFrameRateFactor = isChanged ? 1f : mFrameRateFactor * STATIC_FRAME_DECAY_FACTOR;
+    }
+
+    public boolean isThrottled() {
+        return mFrameRateFactor < 1f;
+    }
+
+    public void reset() {
+        mFrameRateFactor = 1f;
+    }
+
+    public float collect() {
+        final long startTimestamp = mCollectionTimestamp.getAndSet(SystemClock.elapsedRealtimeNanos());
+        final long endTimestamp = mCollectionTimestamp.get();
+        return (float) ((double) mFrameCount.getAndSet(0L) / (endTimestamp - startTimestamp) * NANOS_PER_SECOND);
+    }
+}
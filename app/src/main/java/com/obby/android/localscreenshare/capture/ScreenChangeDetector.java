@@ -0,0 +1,141 @@
+package com.obby.android.localscreenshare.capture;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class ScreenChangeDetector {
+    public static final int TILE_SIZE = 128;
+
+    private static final float MAX_DIRTY_TILE_RATIO = 1 / 3f;
+
+    private static final int SAMPLE_STEP = 8;
+
+    private int mWidth;
+
+    private int mHeight;
+
+    private int mColumnCount;
+
+    private int mRowCount;
+
+    private int mDirtyTileCount;
+
+    @Nullable
+    private int[] mPixels;
+
+    @Nullable
+    private int[] mPreviousPixels;
+
+    @Nullable
+    private boolean[] mDirtyTiles;
+
+    @Nullable
+    public List<Rect> detect(@NonNull final ByteBuffer buffer, final int rowStride, final int width,
+        final int height) {
+        if (mPixels == null || mPreviousPixels == null || mDirtyTiles == null || mWidth != width
+            || mHeight != height) {
+            mWidth = width;
+            mHeight = height;
+            mColumnCount = (width + TILE_SIZE - 1) / TILE_SIZE;
+            mRowCount = (height + TILE_SIZE - 1) / TILE_SIZE;
+            mPixels = new int[width * height];
+            mPreviousPixels = new int[width * height];
+            mDirtyTiles = new boolean[mColumnCount * mRowCount];
+            mDirtyTileCount = 0;
+            readPixels(buffer, rowStride, mPreviousPixels);
+            return null;
+        }
+
+        readPixels(buffer, rowStride, mPixels);
+
+        final List<Rect> dirtyTiles = new ArrayList<>();
+        for (int row = 0; row < mRowCount; row++) {
+            for (int column = 0; column < mColumnCount; column++) {
+                final Rect tile = new Rect(column * TILE_SIZE, row * TILE_SIZE,
+                    Math.min((column + 1) * TILE_SIZE, mWidth), Math.min((row + 1) * TILE_SIZE, mHeight));
+                if (!isTileDirty(tile)) {
+                    continue;
+                }
+
+                dirtyTiles.add(tile);
+                if (!mDirtyTiles[row * mColumnCount + column]) {
+                    mDirtyTiles[row * mColumnCount + column] = true;
+                    mDirtyTileCount++;
+                }
+            }
+        }
+
+        final int[] pixels = mPreviousPixels;
+        mPreviousPixels = mPixels;
+        mPixels = pixels;
+
+        if (mDirtyTileCount > mDirtyTiles.length * MAX_DIRTY_TILE_RATIO) {
+            Arrays.fill(mDirtyTiles, false);
+            mDirtyTileCount = 0;
+            return null;
+        }
+
+        return dirtyTiles;
+    }
+
+    public boolean isChanged(@NonNull final ByteBuffer buffer, final int rowStride, final int width,
+        final int height) {
+        if (mPreviousPixels == null || mWidth != width || mHeight != height) {
+            return true;
+        }
+
+        buffer.rewind();
+        final IntBuffer intBuffer = buffer.asIntBuffer();
+        for (int y = SAMPLE_STEP / 2; y < mHeight; y += SAMPLE_STEP) {
+            for (int x = SAMPLE_STEP / 2; x < mWidth; x += SAMPLE_STEP) {
+                if (intBuffer.get(y * rowStride + x) != mPreviousPixels[y * mWidth + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void reset() {
+        mWidth = 0;
+        mHeight = 0;
+        mColumnCount = 0;
+        mRowCount = 0;
+        mDirtyTileCount = 0;
+        mPixels = null;
+        mPreviousPixels = null;
+        mDirtyTiles = null;
+    }
+
+    @SuppressWarnings("DataFlowIssue")
+    private boolean isTileDirty(@NonNull final Rect tile) {
+        for (int y = tile.top; y < tile.bottom; y++) {
+            final int offset = y * mWidth;
+            for (int x = tile.left; x < tile.right; x++) {
+                if (mPixels[offset + x] != mPreviousPixels[offset + x]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void readPixels(@NonNull final ByteBuffer buffer, final int rowStride, @NonNull final int[] pixels) {
+        buffer.rewind();
+
+        final IntBuffer intBuffer = buffer.asIntBuffer();
+        for (int y = 0; y < mHeight; y++) {
+            final int offset = y * mWidth;
+            intBuffer.position(y * rowStride);
+            intBuffer.get(pixels, offset, mWidth);
+        }
+    }
+}
@@ -0,0 +1,704 @@
+package com.obby.android.localscreenshare.capture;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProcessingUtil;
+import androidx.core.util.Pools;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+import com.obby.android.localscreenshare.server.LssServerStats;
+import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.Histogram;
+import com.obby.android.localscreenshare.support.MetricsWriter;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+public final class ScreenFramePipeline {
+    private static final String CAPTURE_STAGE_NAME = "capture";
+
+    private static final String ENCODE_STAGE_NAME = "encode";
+
+    private static final String PUBLISH_STAGE_NAME = "publish";
+
+    private static final int BITMAP_BUFFER_COUNT = 2;
+
+    private static final int STRIPE_ALIGNMENT = 16;
+
+    private static final int MIN_STRIPE_HEIGHT = 64;
+
+    private static final double[] PROCESSING_TIME_BUCKETS =
+        {0.001d, 0.002d, 0.005d, 0.01d, 0.02d, 0.05d, 0.1d, 0.2d, 0.5d, 1d};
+
+    private static final double[] FRAME_SIZE_BUCKETS =
+        {1024d, 4096d, 16384d, 65536d, 262144d, 1048576d, 4194304d};
+
+    private volatile boolean mIsReleased;
+
+    private volatile boolean mIsKeyFrameRequested;
+
+    @NonNull
+    private volatile Set<ScreenEncoding> mScreenEncodings = Collections.emptySet();
+
+    @NonNull
+    private Map<ScreenEncoding, Size> mEncodedSizes = Collections.emptyMap();
+
+    @NonNull
+    private final Listener mListener;
+
+    @NonNull
+    private final Object mLock = new Object();
+
+    @NonNull
+    private final ScreenChangeDetector mScreenChangeDetector = new ScreenChangeDetector();
+
+    @NonNull
+    private final FrameRateGovernor mFrameRateGovernor = new FrameRateGovernor();
+
+    @NonNull
+    private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+    @NonNull
+    private final Pools.Pool<Bitmap> mBitmapBuffers = new Pools.SynchronizedPool<>(BITMAP_BUFFER_COUNT);
+
+    @NonNull
+    private final StageProfile mCaptureStageProfile = new StageProfile(CAPTURE_STAGE_NAME);
+
+    @NonNull
+    private final LongAdder mCapturedFrameCount = new LongAdder();
+
+    @NonNull
+    private final Histogram mEncodedFrameSizeHistogram = new Histogram(FRAME_SIZE_BUCKETS);
+
+    @NonNull
+    private final ExecutorService mEncodeExecutor = createStageExecutor("lss-pipeline-encoder-%d");
+
+    @NonNull
+    private final ExecutorService mPublishExecutor = createStageExecutor("lss-pipeline-publisher-%d");
+
+    @NonNull
+    private final ForkJoinPool mParallelEncodePool = new ForkJoinPool(Constants.CPU_COUNT);
+
+    @NonNull
+    private final Stage<CapturedFrame> mEncodeStage;
+
+    @NonNull
+    private final Stage<Map<ScreenEncoding, ScreenFrame>> mPublishStage;
+
+    public ScreenFramePipeline(@NonNull final Listener listener) {
+        mListener = listener;
+        mEncodeStage = new Stage<>(ENCODE_STAGE_NAME, mEncodeExecutor, this::encode, (frame, newFrame) -> {
+            releaseBitmapBuffer(frame.getBitmap());
+            return new CapturedFrame(newFrame.getTimestamp(), newFrame.getBitmap(),
+                mergeDirtyTiles(frame.getDirtyTiles(), newFrame.getDirtyTiles()), newFrame.getQuality(),
+                newFrame.isSecure(), newFrame.isParallel(), newFrame.getEncodings());
+        });
+        mPublishStage = new Stage<>(PUBLISH_STAGE_NAME, mPublishExecutor, frames -> {
+            mListener.onScreenFramesPublished(frames);
+            frames.values().forEach(mBufferPool::release);
+        }, (frames, newFrames) -> {
+            final Map<ScreenEncoding, ScreenFrame> mergedFrames = new HashMap<>(frames);
+            newFrames.forEach((encoding, frame) -> mergedFrames.merge(encoding, frame, ScreenFrameUtils::merge));
+            mergedFrames.values().forEach(mBufferPool::retain);
+            frames.values().forEach(mBufferPool::release);
+            newFrames.values().forEach(mBufferPool::release);
+            return mergedFrames;
+        });
+    }
+
+    @SuppressLint("RestrictedApi")
+    public void capture(@NonNull final Image image, final long timestamp, final int quality,
+        final boolean isSecure, final boolean isParallel) {
+        if (mIsReleased) {
+            return;
+        }
+
+        final long startTimestamp = SystemClock.elapsedRealtimeNanos();
+        mCapturedFrameCount.increment();
+
+        if (mIsKeyFrameRequested) {
+            mIsKeyFrameRequested = false;
+            mScreenChangeDetector.reset();
+        }
+
+        final Set<ScreenEncoding> encodings = mListener.getScreenEncodings();
+        final Image.Plane plane = image.getPlanes()[0];
+        final List<Rect> dirtyTiles = mScreenChangeDetector.detect(plane.getBuffer(),
+            plane.getRowStride() / plane.getPixelStride(), image.getWidth(), image.getHeight());
+        mFrameRateGovernor.update(dirtyTiles == null || !dirtyTiles.isEmpty());
+        if (dirtyTiles != null && dirtyTiles.isEmpty() && mScreenEncodings.containsAll(encodings)) {
+            mListener.onScreenFrameSuppressed();
+            return;
+        }
+
+        final CapturedFrame pendingFrame = mEncodeStage.poll();
+        Bitmap bitmap = Optional.ofNullable(pendingFrame)
+            .map(CapturedFrame::getBitmap)
+            .orElseGet(mBitmapBuffers::acquire);
+        if (bitmap == null || bitmap.getWidth() != image.getWidth() || bitmap.getHeight() != image.getHeight()) {
+            Optional.ofNullable(bitmap).ifPresent(Bitmap::recycle);
+            bitmap = Bitmap.createBitmap(image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888);
+        }
+
+        plane.getBuffer().rewind();
+        ImageProcessingUtil.copyByteBufferToBitmap(bitmap, plane.getBuffer(), plane.getRowStride());
+
+        final List<Rect> finalDirtyTiles;
+        if (pendingFrame == null) {
+            finalDirtyTiles = dirtyTiles;
+        } else {
+            mEncodeStage.getProfile().addSupersededFrame();
+            finalDirtyTiles = mergeDirtyTiles(pendingFrame.getDirtyTiles(), dirtyTiles);
+        }
+
+        mCaptureStageProfile.addProcessedFrame(SystemClock.elapsedRealtimeNanos() - startTimestamp);
+        mEncodeStage.offer(new CapturedFrame(timestamp, bitmap, finalDirtyTiles, quality, isSecure,
+            isParallel, encodings));
+    }
+
+    public long getFrameInterval(final int maxFrameRate) {
+        return mFrameRateGovernor.getFrameInterval(maxFrameRate);
+    }
+
+    public boolean isThrottled() {
+        return mFrameRateGovernor.isThrottled();
+    }
+
+    public boolean isChanged(@NonNull final Image image) {
+        final Image.Plane plane = image.getPlanes()[0];
+        final boolean isChanged = mIsKeyFrameRequested || !mScreenEncodings.containsAll(mListener.getScreenEncodings())
+            || mScreenChangeDetector.isChanged(plane.getBuffer(), plane.getRowStride() / plane.getPixelStride(),
+            image.getWidth(), image.getHeight());
+        if (isChanged) {
+            mFrameRateGovernor.reset();
+        }
+        return isChanged;
+    }
+
+    public void reset() {
+        mScreenChangeDetector.reset();
+        mFrameRateGovernor.reset();
+    }
+
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            mEncodeExecutor.shutdownNow();
+            mPublishExecutor.shutdownNow();
+            mParallelEncodePool.shutdownNow();
+            Optional.ofNullable(mEncodeStage.poll()).ifPresent(frame -> frame.getBitmap().recycle());
+            Optional.ofNullable(mPublishStage.poll())
+                .ifPresent(frames -> frames.values().forEach(mBufferPool::release));
+
+            while (true) {
+                final Bitmap bitmap = mBitmapBuffers.acquire();
+                if (bitmap == null) {
+                    break;
+                }
+                bitmap.recycle();
+            }
+        }
+    }
+
+    public float collectFrameRate() {
+        return mFrameRateGovernor.collect();
+    }
+
+    @NonNull
+    public List<LssServerStats.PipelineStageStats> collect() {
+        return Stream.of(mCaptureStageProfile, mEncodeStage.getProfile(), mPublishStage.getProfile())
+            .map(StageProfile::collect)
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    public void writeMetrics(@NonNull final MetricsWriter writer) {
+        writer.counter("lss_captured_frames_total", "Frames received from the screen capture.",
+            mCapturedFrameCount.sum());
+        Stream.of(mCaptureStageProfile, mEncodeStage.getProfile(), mPublishStage.getProfile())
+            .forEach(profile -> writer.gauge("lss_pipeline_stage_queue_depth", "Frames waiting in a pipeline stage.",
+                profile.getQueueDepth(), "stage", profile.getName()));
+        Stream.of(mCaptureStageProfile, mEncodeStage.getProfile(), mPublishStage.getProfile())
+            .forEach(profile -> writer.histogram("lss_pipeline_stage_duration_seconds",
+                "Time spent processing a frame in a pipeline stage.", profile.getProcessingTimeHistogram(),
+                "stage", profile.getName()));
+        writer.histogram("lss_encoded_frame_size_bytes", "Serialized size of encoded screen frames.",
+            mEncodedFrameSizeHistogram);
+    }
+
+    private void encode(@NonNull final CapturedFrame capturedFrame) {
+        final Bitmap bitmap = capturedFrame.getBitmap();
+        final Map<ScreenEncoding, ScreenFrame> frames = new HashMap<>();
+        final Map<List<Integer>, ScreenFrame> encodedFrames = new HashMap<>();
+        final Map<ScreenEncoding, Size> encodedSizes = new HashMap<>();
+        final Map<ScreenEncoding, Integer> encodedQualities = new HashMap<>();
+        for (final ScreenEncoding encoding : capturedFrame.getEncodings()) {
+            final float scale = getScale(bitmap, encoding) * mListener.getEncodeScale(encoding) / 100f;
+            final int width = scale < 1f ? Math.max(1, Math.round(bitmap.getWidth() * scale)) : bitmap.getWidth();
+            final int height = scale < 1f ? Math.max(1, Math.round(bitmap.getHeight() * scale)) : bitmap.getHeight();
+            encodedSizes.put(encoding, new Size(width, height));
+
+            final int maxQuality = Math.min(capturedFrame.getQuality(), mListener.getEncodeQuality(encoding));
+            encodedQualities.put(encoding,
+                encoding.getQuality() > 0 ? Math.min(encoding.getQuality(), maxQuality) : maxQuality);
+        }
+
+        final Set<List<Integer>> wholeKeyFrameKeys = capturedFrame.getEncodings()
+            .stream()
+            .filter(ScreenFrameUtils::isKeyFrameOnly)
+            .map(encoding -> getEncodedFrameKey(encodedSizes.get(encoding), encodedQualities.get(encoding), true))
+            .collect(Collectors.toSet());
+
+        boolean isEncoded = true;
+        for (final ScreenEncoding encoding : capturedFrame.getEncodings()) {
+            final Size size = encodedSizes.get(encoding);
+            final int width = size.getWidth();
+            final int height = size.getHeight();
+            final int quality = encodedQualities.get(encoding);
+
+            final List<Rect> capturedDirtyTiles = mScreenEncodings.contains(encoding)
+                && size.equals(mEncodedSizes.get(encoding)) ? capturedFrame.getDirtyTiles() : null;
+            if (capturedDirtyTiles != null && capturedDirtyTiles.isEmpty()) {
+                continue;
+            }
+
+            final List<Rect> dirtyTiles = ScreenFrameUtils.isKeyFrameOnly(encoding) ? null : capturedDirtyTiles;
+            final List<Integer> encodedFrameKey = getEncodedFrameKey(size, quality, dirtyTiles == null);
+            final boolean isParallel = capturedFrame.isParallel() && !wholeKeyFrameKeys.contains(encodedFrameKey);
+
+            ScreenFrame frame = encodedFrames.get(encodedFrameKey);
+            if (frame == null) {
+                frame = encode(capturedFrame, width, height, quality, dirtyTiles, isParallel);
+                if (frame == null) {
+                    isEncoded = false;
+                    break;
+                }
+                mEncodedFrameSizeHistogram.record(frame.getSerializedSize());
+                encodedFrames.put(encodedFrameKey, frame);
+            }
+
+            mBufferPool.retain(frame);
+            frames.put(encoding, frame);
+        }
+
+        releaseBitmapBuffer(bitmap);
+
+        if (!isEncoded) {
+            frames.values().forEach(mBufferPool::release);
+            mIsKeyFrameRequested = true;
+            return;
+        }
+
+        mScreenEncodings = capturedFrame.getEncodings();
+        mEncodedSizes = encodedSizes;
+        if (!frames.isEmpty()) {
+            mPublishStage.offer(frames);
+        }
+    }
+
+    @NonNull
+    private static List<Integer> getEncodedFrameKey(@NonNull final Size size, final int quality,
+        final boolean isKeyFrame) {
+        return List.of(size.getWidth(), size.getHeight(), quality, isKeyFrame ? 1 : 0);
+    }
+
+    @Nullable
+    private ScreenFrame encode(@NonNull final CapturedFrame capturedFrame, final int width, final int height,
+        final int quality, @Nullable final List<Rect> dirtyTiles, final boolean isParallel) {
+        final Bitmap bitmap = capturedFrame.getBitmap();
+        final boolean isScaled = width != bitmap.getWidth() || height != bitmap.getHeight();
+        final Bitmap encodeBitmap = isScaled ? Bitmap.createScaledBitmap(bitmap, width, height, true) : bitmap;
+        final ScreenFrame.Builder frameBuilder = ScreenFrame.newBuilder()
+            .setTimestamp(capturedFrame.getTimestamp())
+            .setSecure(capturedFrame.isSecure());
+
+        final List<Rect> tiles;
+        if (dirtyTiles != null) {
+            tiles = isScaled ? scaleTiles(dirtyTiles, (float) width / bitmap.getWidth(),
+                (float) height / bitmap.getHeight(), width, height) : dirtyTiles;
+        } else {
+            frameBuilder.setKeyFrame(true)
+                .setWidth(encodeBitmap.getWidth())
+                .setHeight(encodeBitmap.getHeight());
+            tiles = isParallel ? getStripes(encodeBitmap.getWidth(), encodeBitmap.getHeight()) : null;
+        }
+
+        final boolean isEncoded;
+        if (tiles == null) {
+            final ByteString data = compressBitmap(encodeBitmap, quality);
+            isEncoded = data != null;
+            if (isEncoded) {
+                frameBuilder.setData(data);
+            }
+        } else {
+            final List<ByteString> tileData = compressTiles(encodeBitmap, tiles, quality, isParallel);
+            isEncoded = tileData != null;
+            if (isEncoded) {
+                for (int i = 0; i < tiles.size(); i++) {
+                    frameBuilder.addTiles(ScreenTile.newBuilder()
+                        .setLeft(tiles.get(i).left)
+                        .setTop(tiles.get(i).top)
+                        .setWidth(tiles.get(i).width())
+                        .setHeight(tiles.get(i).height())
+                        .setData(tileData.get(i)));
+                }
+            }
+        }
+
+        if (encodeBitmap != bitmap) {
+            encodeBitmap.recycle();
+        }
+        return isEncoded ? frameBuilder.build() : null;
+    }
+
+    @Nullable
+    private List<ByteString> compressTiles(@NonNull final Bitmap bitmap, @NonNull final List<Rect> tiles,
+        final int quality, final boolean isParallel) {
+        final List<ByteString> tileData = new ArrayList<>(tiles.size());
+
+        if (!isParallel || tiles.size() <= 1) {
+            for (final Rect tile : tiles) {
+                final ByteString data = compressTile(bitmap, tile, quality);
+                if (data == null) {
+                    tileData.forEach(mBufferPool::release);
+                    return null;
+                }
+                tileData.add(data);
+            }
+            return tileData;
+        }
+
+        final List<Callable<ByteString>> tasks = tiles.stream()
+            .map(tile -> (Callable<ByteString>) () -> compressTile(bitmap, tile, quality))
+            .collect(Collectors.toList());
+        boolean isCompressed = true;
+        try {
+            for (final Future<ByteString> future : mParallelEncodePool.invokeAll(tasks)) {
+                final ByteString data = future.get();
+                if (data == null) {
+                    isCompressed = false;
+                } else {
+                    tileData.add(data);
+                }
+            }
+        } catch (InterruptedException | ExecutionException | RejectedExecutionException e) {
+            isCompressed = false;
+        }
+
+        if (!isCompressed) {
+            tileData.forEach(mBufferPool::release);
+            return null;
+        }
+        return tileData;
+    }
+
+    private void releaseBitmapBuffer(@NonNull final Bitmap bitmap) {
+        synchronized (mLock) {
+            if (mIsReleased || !mBitmapBuffers.release(bitmap)) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    @Nullable
+    private static List<Rect> mergeDirtyTiles(@Nullable final List<Rect> dirtyTiles,
+        @Nullable final List<Rect> newDirtyTiles) {
+        if (dirtyTiles == null || newDirtyTiles == null) {
+            return null;
+        }
+
+        final Set<Rect> tiles = new LinkedHashSet<>(dirtyTiles);
+        tiles.addAll(newDirtyTiles);
+        return new ArrayList<>(tiles);
+    }
+
+    private static float getScale(@NonNull final Bitmap bitmap, @NonNull final ScreenEncoding encoding) {
+        float scale = 1f;
+        if (encoding.getMaxWidth() > 0) {
+            scale = Math.min(scale, (float) encoding.getMaxWidth() / bitmap.getWidth());
+        }
+        if (encoding.getMaxHeight() > 0) {
+            scale = Math.min(scale, (float) encoding.getMaxHeight() / bitmap.getHeight());
+        }
+        return scale;
+    }
+
+    @NonNull
+    private static List<Rect> scaleTiles(@NonNull final List<Rect> tiles, final float scaleX, final float scaleY,
+        final int width, final int height) {
+        final List<Rect> scaledTiles = new ArrayList<>(tiles.size());
+        for (final Rect tile : tiles) {
+            final Rect scaledTile = new Rect((int) Math.floor(tile.left * scaleX),
+                (int) Math.floor(tile.top * scaleY), Math.min(width, (int) Math.ceil(tile.right * scaleX)),
+                Math.min(height, (int) Math.ceil(tile.bottom * scaleY)));
+            if (!scaledTile.isEmpty()) {
+                scaledTiles.add(scaledTile);
+            }
+        }
+        return scaledTiles;
+    }
+
+    @NonNull
+    private static List<Rect> getStripes(final int width, final int height) {
+        final int stripeHeight = Math.max(MIN_STRIPE_HEIGHT, (height / Constants.CPU_COUNT + STRIPE_ALIGNMENT - 1)
+            / STRIPE_ALIGNMENT * STRIPE_ALIGNMENT);
+        final List<Rect> stripes = new ArrayList<>();
+        for (int top = 0; top < height; top += stripeHeight) {
+            stripes.add(new Rect(0, top, width, Math.min(top + stripeHeight, height)));
+        }
+        return stripes;
+    }
+
+    @Nullable
+    private ByteString compressTile(@NonNull final Bitmap bitmap, @NonNull final Rect tile, final int quality) {
+        final Bitmap tileBitmap = Bitmap.createBitmap(bitmap, tile.left, tile.top, tile.width(), tile.height());
+        final ByteString data = compressBitmap(tileBitmap, quality);
+        if (tileBitmap != bitmap) {
+            tileBitmap.recycle();
+        }
+        return data;
+    }
+
+    @Nullable
+    private ByteString compressBitmap(@NonNull final Bitmap bitmap, final int quality) {
+        final ScreenFrameBufferPool.Buffer buffer = mBufferPool.acquire();
+        if (bitmap.compress(Bitmap.CompressFormat.JPEG, quality, buffer)) {
+            return mBufferPool.wrap(buffer);
+        }
+
+        mBufferPool.recycle(buffer);
+        return null;
+    }
+
+    @NonNull
+    private static ExecutorService createStageExecutor(@NonNull final String namingPattern) {
+        return Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+            .namingPattern(namingPattern)
+            .wrappedFactory(runnable -> new Thread(runnable) {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    super.run();
+                }
+            })
+            .build());
+    }
+
+    public interface Listener {
+        void onScreenFramesPublished(@NonNull Map<ScreenEncoding, ScreenFrame> frames);
+
+        void onScreenFrameSuppressed();
+
+        @NonNull
+        Set<ScreenEncoding> getScreenEncodings();
+
+        int getEncodeQuality(@NonNull ScreenEncoding encoding);
+
+        int getEncodeScale(@NonNull ScreenEncoding encoding);
+    }
+
+    @Accessors(prefix = "m")
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class CapturedFrame {
+        private final long mTimestamp;
+
+        @NonNull
+        private final Bitmap mBitmap;
+
+        @Nullable
+        private final List<Rect> mDirtyTiles;
+
+        private final int mQuality;
+
+        private final boolean mIsSecure;
+
+        private final boolean mIsParallel;
+
+        @NonNull
+        private final Set<ScreenEncoding> mEncodings;
+    }
+
+    @Accessors(prefix = "m")
+    private static class Stage<T> {
+        @Nullable
+        private T mPendingItem;
+
+        private boolean mIsScheduled;
+
+        @Getter
+        @NonNull
+        private final StageProfile mProfile;
+
+        @NonNull
+        private final ExecutorService mExecutor;
+
+        @NonNull
+        private final Consumer<T> mProcessor;
+
+        @NonNull
+        private final BinaryOperator<T> mMerger;
+
+        @NonNull
+        private final Object mLock = new Object();
+
+        private Stage(@NonNull final String name, @NonNull final ExecutorService executor,
+            @NonNull final Consumer<T> processor, @NonNull final BinaryOperator<T> merger) {
+            mProfile = new StageProfile(name);
+            mExecutor = executor;
+            mProcessor = processor;
+            mMerger = merger;
+        }
+
+        public void offer(@NonNull final T item) {
+            synchronized (mLock) {
+                if (mPendingItem == null) {
+                    mPendingItem = item;
+                } else {
+                    mProfile.addSupersededFrame();
+                    mPendingItem = mMerger.apply(mPendingItem, item);
+                }
+                mProfile.setQueueDepth(1);
+
+                if (!mIsScheduled && !mExecutor.isShutdown()) {
+                    mIsScheduled = true;
+                    mExecutor.execute(this::drain);
+                }
+            }
+        }
+
+        @Nullable
+        public T poll() {
+            synchronized (mLock) {
+                final T item = mPendingItem;
+                mPendingItem = null;
+                mProfile.setQueueDepth(0);
+                return item;
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                final T item;
+                synchronized (mLock) {
+                    item = mPendingItem;
+                    mPendingItem = null;
+                    mProfile.setQueueDepth(0);
+                    if (item == null) {
+                        mIsScheduled = false;
+                        return;
+                    }
+                }
+
+                final long startTimestamp = SystemClock.elapsedRealtimeNanos();
+                mProcessor.accept(item);
+                mProfile.addProcessedFrame(SystemClock.elapsedRealtimeNanos() - startTimestamp);
+            }
+        }
+    }
+
+    @Accessors(prefix = "m")
+    private static class StageProfile {
+        @Getter
+        private volatile int mQueueDepth;
+
+        private volatile int mMaxQueueDepth;
+
+        @Getter
+        @NonNull
+        private final String mName;
+
+        @Getter
+        @NonNull
+        private final Histogram mProcessingTimeHistogram = new Histogram(PROCESSING_TIME_BUCKETS);
+
+        @NonNull
+        private final Object mLock = new Object();
+
+        @NonNull
+        private final AtomicLong mProcessedFrameCount = new AtomicLong();
+
+        @NonNull
+        private final AtomicLong mSupersededFrameCount = new AtomicLong();
+
+        @NonNull
+        private final AtomicLong mProcessingTime = new AtomicLong();
+
+        private StageProfile(@NonNull final String name) {
+            mName = name;
+        }
+
+        public void setQueueDepth(final int queueDepth) {
+            mQueueDepth = queueDepth;
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, queueDepth);
+        }
+
+        public void addProcessedFrame(final long processingTime) {
+            synchronized (mLock) {
+                mProcessedFrameCount.incrementAndGet();
+                mProcessingTime.addAndGet(processingTime);
+            }
+            mProcessingTimeHistogram.record(processingTime / 1e9d);
+        }
+
+        public void addSupersededFrame() {
+            mSupersededFrameCount.incrementAndGet();
+        }
+
+        @NonNull
+        public LssServerStats.PipelineStageStats collect() {
+            synchronized (mLock) {
+                final long processedFrameCount = mProcessedFrameCount.getAndSet(0L);
+                final long processingTime = mProcessingTime.getAndSet(0L);
+                final int maxQueueDepth = mMaxQueueDepth;
+                mMaxQueueDepth = mQueueDepth;
+                return LssServerStats.PipelineStageStats.builder()
+                    .name(mName)
+                    .queueDepth(mQueueDepth)
+                    .maxQueueDepth(maxQueueDepth)
+                    .processedFrameCount(processedFrameCount)
+                    .supersededFrameCount(mSupersededFrameCount.getAndSet(0L))
+                    .averageProcessingTime(processedFrameCount == 0L ? 0L : processingTime / processedFrameCount)
+                    .build();
+            }
+        }
+    }
+}
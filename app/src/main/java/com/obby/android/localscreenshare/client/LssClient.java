@@ -1,7 +1,14 @@
 package com.obby.android.localscreenshare.client;
 
+import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
@@ -11,27 +18,50 @@ import android.util.Size;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.util.Pools;
 
-import com.google.protobuf.Empty;
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.discovery.LssServiceInfo;
+import com.obby.android.localscreenshare.grpc.screenstream.ClockProbe;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
 import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrameAck;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamRequest;
 import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamServiceGrpc;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+import com.obby.android.localscreenshare.server.LssServer;
+import com.obby.android.localscreenshare.support.BitmapPool;
 import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.Histogram;
+import com.obby.android.localscreenshare.support.MetricsWriter;
+import com.obby.android.localscreenshare.support.Preferences;
 import com.obby.android.localscreenshare.support.Reference;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
 import com.obby.android.localscreenshare.utils.ThreadUtils;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import io.grpc.CallOptions;
 import io.grpc.Channel;
@@ -59,10 +89,40 @@ public final class LssClient {
     @Nullable
     private LssClientStats mClientStats;
 
+    @Nullable
+    private volatile LssServer mRelayServer;
+
     @Setter
     @Nullable
     private LssClientStatsListener mClientStatsListener;
 
+    @Setter
+    @NonNull
+    private ScreenStreamRequest mScreenStreamRequest = ScreenStreamRequest.getDefaultInstance();
+
+    @Setter
+    @Nullable
+    private InetSocketAddress mMulticastAddress;
+
+    @Setter
+    @Nullable
+    private InetSocketAddress mSocketAddress;
+
+    @Nullable
+    private volatile Size mDisplaySize;
+
+    @Nullable
+    private volatile RectF mViewport;
+
+    @Nullable
+    private volatile ScreenFrameDecoder mScreenFrameDecoder;
+
+    @Nullable
+    private ScreenFrameReceiver mScreenFrameReceiver;
+
+    @Nullable
+    private StreamObserver<ScreenFrameAck> mScreenFrameAckObserver;
+
     private final String mTag = "LssClient@" + hashCode();
 
     @NonNull
@@ -72,7 +132,10 @@ public final class LssClient {
     private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     @NonNull
-    private final Pools.Pool<Bitmap> mScreenFrameCache = new Pools.SynchronizedPool<>(4);
+    private final Object mScreenFrameAckLock = new Object();
+
+    @NonNull
+    private final BitmapPool mBitmapPool = BitmapPool.get();
 
     @NonNull
     private final ExecutorService mGrpcClientExecutor = new ThreadPoolExecutor(Constants.CPU_COUNT,
@@ -87,6 +150,21 @@ public final class LssClient {
         })
         .build(), new ThreadPoolExecutor.CallerRunsPolicy());
 
+    @NonNull
+    private final ForkJoinPool mTileDecodePool = new ForkJoinPool(Constants.CPU_COUNT);
+
+    @NonNull
+    private final ExecutorService mScreenFrameDecodeExecutor = Executors.newSingleThreadExecutor(
+        new BasicThreadFactory.Builder()
+            .namingPattern("lss-screen-frame-decode-%d")
+            .build());
+
+    @NonNull
+    private final ExecutorService mChunkedScreenFrameDecodeExecutor = Executors.newSingleThreadExecutor(
+        new BasicThreadFactory.Builder()
+            .namingPattern("lss-chunked-frame-decode-%d")
+            .build());
+
     @NonNull
     private final ClientStreamTracer.Factory mClientStreamTracerFactory = new ClientStreamTracer.Factory() {
         @Override
@@ -148,119 +226,763 @@ public final class LssClient {
     }
 
     public void start(@NonNull final LssClientObserver observer) {
-        ScreenStreamServiceGrpc.newStub(mGrpcChannel)
-            .getScreenStream(Empty.getDefaultInstance(), new StreamObserver<>() {
-                private boolean mIsConnected;
+        final ScreenFrameDecoder screenFrameDecoder = new ScreenFrameDecoder(observer);
+        mScreenFrameDecoder = screenFrameDecoder;
+        final StreamObserver<ScreenFrame> screenFrameObserver = new StreamObserver<>() {
+            @Nullable
+            private ScreenFrame mChunkedScreenFrame;
 
-                private long mScreenFrameTimestamp = -1L;
+            @Nullable
+            private ByteString mChunkedScreenFrameData;
 
-                @Override
-                public void onNext(ScreenFrame value) {
-                    final BitmapFactory.Options options = new BitmapFactory.Options();
-                    options.inJustDecodeBounds = true;
-
-                    try (final InputStream input = value.getData().newInput()) {
-                        BitmapFactory.decodeStream(input, null, options);
-                    } catch (IOException e) {
-                        return;
-                    }
+            @Nullable
+            private ScreenFrameChunkInputStream mChunkedScreenFrameInput;
 
-                    final Size size = new Size(options.outWidth, options.outHeight);
-                    final Bitmap cachedBitmap = mScreenFrameCache.acquire();
-                    if (cachedBitmap == null || cachedBitmap.getWidth() != size.getWidth()
-                        || cachedBitmap.getHeight() != size.getHeight()) {
-                        Optional.ofNullable(cachedBitmap).ifPresent(Bitmap::recycle);
-                        options.inBitmap = Bitmap.createBitmap(size.getWidth(), size.getHeight(),
-                            Bitmap.Config.ARGB_8888);
-                    } else {
-                        options.inBitmap = cachedBitmap;
-                    }
-                    options.inJustDecodeBounds = false;
-
-                    final Bitmap bitmap;
-                    try (final InputStream input = value.getData().newInput()) {
-                        bitmap = BitmapFactory.decodeStream(input, null, options);
-                        if (bitmap == null) {
-                            options.inBitmap.recycle();
-                            return;
-                        }
-                    } catch (IOException e) {
-                        options.inBitmap.recycle();
-                        return;
-                    }
+            @Nullable
+            private Future<Bitmap> mChunkedScreenFrameDecodeFuture;
 
-                    ThreadUtils.runOnMainThread(() -> {
-                        if (mIsStopped) {
-                            bitmap.recycle();
-                            return;
-                        }
-
-                        if (!mIsConnected) {
-                            mIsConnected = true;
-                            observer.onConnected();
-                        }
-
-                        final Reference<Bitmap> reference = new Reference<>(bitmap) {
-                            @Override
-                            public void clear() {
-                                super.clear();
-                                if (mIsStopped || !mScreenFrameCache.release(bitmap)) {
-                                    bitmap.recycle();
-                                }
-                            }
-                        };
-                        if (mScreenFrameTimestamp >= value.getTimestamp()) {
-                            reference.clear();
-                            return;
-                        }
-
-                        mScreenFrameTimestamp = value.getTimestamp();
-                        observer.onScreenFrameReceived(reference, value.getSecure());
-                    });
+            @Override
+            public void onNext(ScreenFrame value) {
+                if (mIsStopped) {
+                    return;
                 }
 
-                @Override
-                public void onError(Throwable t) {
-                    onDisconnected();
+                if (value.getDataSize() > 0) {
+                    onScreenFrameChunk(value);
+                } else {
+                    abortChunkedScreenFrame();
+                    onScreenFrame(value, null);
                 }
+            }
 
-                @Override
-                public void onCompleted() {
-                    onDisconnected();
+            @Override
+            public void onError(Throwable t) {
+                onDisconnected();
+            }
+
+            @Override
+            public void onCompleted() {
+                onDisconnected();
+            }
+
+            private void onScreenFrame(@NonNull final ScreenFrame frame, @Nullable final Future<Bitmap> decodeFuture) {
+                Optional.ofNullable(mRelayServer).ifPresent(relayServer -> relayServer.postScreenFrames(
+                    Map.of(ScreenEncoding.getDefaultInstance(), frame)));
+                screenFrameDecoder.postScreenFrame(frame, decodeFuture);
+            }
+
+            private void onScreenFrameChunk(@NonNull final ScreenFrame chunk) {
+                if (chunk.getDataOffset() == 0) {
+                    abortChunkedScreenFrame();
+                    startChunkedScreenFrame(chunk);
+                } else if (mChunkedScreenFrame == null || mChunkedScreenFrameData == null
+                    || mChunkedScreenFrame.getTimestamp() != chunk.getTimestamp()
+                    || mChunkedScreenFrameData.size() != chunk.getDataOffset()) {
+                    abortChunkedScreenFrame();
+                    return;
+                } else {
+                    mChunkedScreenFrameData = mChunkedScreenFrameData.concat(chunk.getData());
+                    Optional.ofNullable(mChunkedScreenFrameInput).ifPresent(input -> input.write(chunk.getData()));
                 }
 
-                private void onDisconnected() {
-                    mMainHandler.post(() -> {
-                        if (!mIsStopped) {
-                            observer.onDisconnected();
-                        }
-                    });
+                if (mChunkedScreenFrame == null || mChunkedScreenFrameData == null
+                    || mChunkedScreenFrameData.size() < chunk.getDataSize()) {
+                    return;
                 }
-            });
+
+                Optional.ofNullable(mChunkedScreenFrameInput).ifPresent(ScreenFrameChunkInputStream::finish);
+                final ScreenFrame frame = mChunkedScreenFrame.toBuilder()
+                    .setData(mChunkedScreenFrameData)
+                    .clearDataSize()
+                    .clearDataOffset()
+                    .build();
+                final Future<Bitmap> decodeFuture = mChunkedScreenFrameDecodeFuture;
+                mChunkedScreenFrame = null;
+                mChunkedScreenFrameData = null;
+                mChunkedScreenFrameInput = null;
+                mChunkedScreenFrameDecodeFuture = null;
+                onScreenFrame(frame, decodeFuture);
+            }
+
+            private void startChunkedScreenFrame(@NonNull final ScreenFrame chunk) {
+                mChunkedScreenFrame = chunk;
+                mChunkedScreenFrameData = chunk.getData();
+
+                if (mViewport != null) {
+                    return;
+                }
+
+                final ScreenFrameChunkInputStream input = new ScreenFrameChunkInputStream();
+                input.write(chunk.getData());
+                final Size size = getScreenFrameSize(chunk);
+                final int sampleSize = size == null ? 1 : getSampleSize(size);
+                try {
+                    mChunkedScreenFrameDecodeFuture = mChunkedScreenFrameDecodeExecutor.submit(() ->
+                        decodeBitmap(input, size, sampleSize));
+                    mChunkedScreenFrameInput = input;
+                } catch (RejectedExecutionException e) {
+                    // ignored
+                }
+            }
+
+            private void abortChunkedScreenFrame() {
+                if (mChunkedScreenFrame == null) {
+                    return;
+                }
+
+                mChunkedScreenFrame = null;
+                mChunkedScreenFrameData = null;
+                Optional.ofNullable(mChunkedScreenFrameInput).ifPresent(ScreenFrameChunkInputStream::abort);
+                mChunkedScreenFrameInput = null;
+                Optional.ofNullable(mChunkedScreenFrameDecodeFuture).ifPresent(LssClient.this::discardBitmap);
+                mChunkedScreenFrameDecodeFuture = null;
+            }
+
+            private void onDisconnected() {
+                abortChunkedScreenFrame();
+                mMainHandler.post(() -> {
+                    if (!mIsStopped) {
+                        observer.onDisconnected();
+                    }
+                });
+            }
+        };
 
         mClientProfile = new ClientProfile();
+        if (mMulticastAddress != null) {
+            mScreenFrameReceiver = new ScreenFrameMulticastReceiver(mMulticastAddress, screenFrameObserver,
+                mClientProfile::addInboundDataSize);
+        } else if (mSocketAddress != null) {
+            mScreenFrameReceiver = new ScreenFrameSocketReceiver(mSocketAddress, screenFrameObserver,
+                mClientProfile::addInboundDataSize);
+        }
+
+        if (mScreenFrameReceiver == null) {
+            ScreenStreamServiceGrpc.newStub(mGrpcChannel).getScreenStream(mScreenStreamRequest, screenFrameObserver);
+            startScreenFrameAck();
+        } else {
+            mScreenFrameReceiver.start();
+        }
         mMainHandler.postDelayed(mUpdateClientStatsRunnable, UPDATE_CLIENT_STATS_INTERVAL_MS);
     }
 
+    public void startRelay(@NonNull final Context context, @NonNull final LssServiceInfo serviceInfo) {
+        if (mIsStopped || mRelayServer != null) {
+            return;
+        }
+
+        if (serviceInfo.getRelayChain().size() >= Constants.MAX_RELAY_HOP_COUNT
+            || serviceInfo.getRelayChain().contains(Preferences.get().getServiceId())) {
+            Log.w(mTag, String.format("startRelay: relay chain rejected, serviceInfo = %s", serviceInfo));
+            return;
+        }
+
+        final LssServer relayServer = new LssServer(context, serviceInfo);
+        try {
+            relayServer.start();
+        } catch (IOException e) {
+            Log.e(mTag, "startRelay: start relay server failed", e);
+            relayServer.stop();
+            return;
+        }
+
+        Log.i(mTag, String.format("startRelay: relay server started, serviceInfo = %s", serviceInfo));
+        mRelayServer = relayServer;
+    }
+
+    public void stopRelay() {
+        final LssServer relayServer = mRelayServer;
+        mRelayServer = null;
+        if (relayServer != null) {
+            relayServer.stop();
+            Log.i(mTag, "stopRelay: relay server stopped");
+        }
+    }
+
+    private void startScreenFrameAck() {
+        final StreamObserver<ClockProbe> clockProbeObserver = new StreamObserver<>() {
+            @Override
+            public void onNext(ClockProbe value) {
+                final long receiveTimestamp = System.nanoTime();
+                sendScreenFrameAck(ScreenFrameAck.newBuilder()
+                    .setType(ScreenFrameAck.Type.TYPE_CLOCK)
+                    .setProbeTimestamp(value.getTimestamp())
+                    .setProbeReceiveTimestamp(receiveTimestamp)
+                    .setTimestamp(System.nanoTime())
+                    .build());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                onClosed();
+            }
+
+            @Override
+            public void onCompleted() {
+                onClosed();
+            }
+
+            private void onClosed() {
+                synchronized (mScreenFrameAckLock) {
+                    mScreenFrameAckObserver = null;
+                }
+            }
+        };
+
+        synchronized (mScreenFrameAckLock) {
+            mScreenFrameAckObserver =
+                ScreenStreamServiceGrpc.newStub(mGrpcChannel).acknowledgeScreenFrames(clockProbeObserver);
+        }
+    }
+
+    private void sendScreenFrameAck(@NonNull final ScreenFrameAck.Type type, final long frameTimestamp) {
+        sendScreenFrameAck(ScreenFrameAck.newBuilder()
+            .setType(type)
+            .setFrameTimestamp(frameTimestamp)
+            .setTimestamp(System.nanoTime())
+            .build());
+    }
+
+    private void sendScreenFrameAck(@NonNull final ScreenFrameAck ack) {
+        synchronized (mScreenFrameAckLock) {
+            if (mIsStopped || mScreenFrameAckObserver == null) {
+                return;
+            }
+
+            try {
+                mScreenFrameAckObserver.onNext(ack);
+            } catch (RuntimeException e) {
+                mScreenFrameAckObserver = null;
+            }
+        }
+    }
+
+    public void writeMetrics(@NonNull final MetricsWriter writer) {
+        Optional.ofNullable(mClientProfile).ifPresent(clientProfile -> clientProfile.writeMetrics(writer));
+        mBitmapPool.writeMetrics(writer);
+    }
+
+    public void setDisplaySize(@Nullable final Size displaySize) {
+        mDisplaySize = displaySize;
+        Optional.ofNullable(mScreenFrameDecoder).ifPresent(ScreenFrameDecoder::invalidate);
+    }
+
+    public void setViewport(@Nullable final RectF viewport) {
+        mViewport = viewport;
+        Optional.ofNullable(mScreenFrameDecoder).ifPresent(ScreenFrameDecoder::invalidate);
+    }
+
     public void stop() {
         mIsStopped = true;
         mClientProfile = null;
         mClientStats = null;
+        stopRelay();
         mMainHandler.removeCallbacksAndMessages(null);
+        Optional.ofNullable(mScreenFrameReceiver).ifPresent(ScreenFrameReceiver::stop);
+        mScreenFrameReceiver = null;
+        synchronized (mScreenFrameAckLock) {
+            try {
+                Optional.ofNullable(mScreenFrameAckObserver).ifPresent(StreamObserver::onCompleted);
+            } catch (RuntimeException e) {
+                // ignored
+            }
+            mScreenFrameAckObserver = null;
+        }
         mGrpcChannel.shutdownNow();
         mGrpcClientExecutor.shutdownNow();
+        mTileDecodePool.shutdownNow();
+        mScreenFrameDecodeExecutor.shutdownNow();
+        mChunkedScreenFrameDecodeExecutor.shutdownNow();
+    }
+
+    @Nullable
+    private static Bitmap getBitmap(@NonNull final Future<Bitmap> bitmapFuture) {
+        try {
+            return bitmapFuture.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void discardBitmap(@NonNull final Future<Bitmap> bitmapFuture) {
+        try {
+            mChunkedScreenFrameDecodeExecutor.execute(() ->
+                mBitmapPool.release(getBitmap(bitmapFuture)));
+        } catch (RejectedExecutionException e) {
+            // ignored
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeBitmap(@NonNull final InputStream input, @Nullable final Size size, final int sampleSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inSampleSize = sampleSize;
+        if (size != null) {
+            final Size sampledSize = getSampledSize(size, sampleSize);
+            options.inBitmap = mBitmapPool.acquire(sampledSize.getWidth(), sampledSize.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap bitmap = null;
+        try {
+            bitmap = BitmapFactory.decodeStream(input, null, options);
+        } catch (IllegalArgumentException e) {
+            // ignored
+        }
+
+        if (bitmap == null) {
+            mBitmapPool.release(options.inBitmap);
+        }
+        return bitmap;
+    }
+
+    private int getSampleSize(@NonNull final Size size) {
+        final Size displaySize = mDisplaySize;
+        int sampleSize = 1;
+        if (displaySize == null || displaySize.getWidth() <= 0 || displaySize.getHeight() <= 0) {
+            return sampleSize;
+        }
+
+        while (size.getWidth() / (sampleSize * 2) >= displaySize.getWidth()
+            && size.getHeight() / (sampleSize * 2) >= displaySize.getHeight()) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @NonNull
+    private Rect getScreenFrameRegion(@NonNull final Size size) {
+        final Rect region = new Rect(0, 0, size.getWidth(), size.getHeight());
+        final RectF viewport = mViewport;
+        if (viewport != null) {
+            region.intersect((int) Math.floor(viewport.left * size.getWidth()),
+                (int) Math.floor(viewport.top * size.getHeight()), (int) Math.ceil(viewport.right * size.getWidth()),
+                (int) Math.ceil(viewport.bottom * size.getHeight()));
+        }
+        return region;
+    }
+
+    @Nullable
+    private static Size getScreenFrameSize(@NonNull final ScreenFrame frame) {
+        return frame.getWidth() > 0 && frame.getHeight() > 0
+            ? new Size(frame.getWidth(), frame.getHeight()) : ScreenFrameUtils.getJpegSize(frame.getData());
+    }
+
+    @SuppressWarnings("deprecation")
+    @NonNull
+    private static BitmapRegionDecoder newRegionDecoder(@NonNull final byte[] data, final int size)
+        throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(data, 0, size);
+        }
+        return BitmapRegionDecoder.newInstance(data, 0, size, false);
+    }
+
+    @NonNull
+    private static Size getSampledSize(@NonNull final Size size, final int sampleSize) {
+        return new Size((size.getWidth() + sampleSize - 1) / sampleSize,
+            (size.getHeight() + sampleSize - 1) / sampleSize);
+    }
 
-        while (true) {
-            final Bitmap bitmap = mScreenFrameCache.acquire();
-            if (bitmap == null) {
-                break;
+    private class ScreenFrameDecoder {
+        private boolean mIsConnected;
+
+        private long mScreenFrameTimestamp = -1L;
+
+        private boolean mIsDecoding;
+
+        private boolean mIsInvalidated;
+
+        private int mSampleSize = 1;
+
+        @Nullable
+        private Size mScreenFrameSize;
+
+        @Nullable
+        private Rect mScreenFrameRegion;
+
+        @Nullable
+        private ScreenFrame mScreenFrameSource;
+
+        @Nullable
+        private BitmapRegionDecoder mRegionDecoder;
+
+        @Nullable
+        private ScreenFrame mPendingScreenFrame;
+
+        @Nullable
+        private Future<Bitmap> mPendingScreenFrameBitmap;
+
+        @Nullable
+        private Bitmap mScreenFrameBitmap;
+
+        @NonNull
+        private byte[] mScreenFrameData = new byte[0];
+
+        @NonNull
+        private final Object mLock = new Object();
+
+        @NonNull
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        @NonNull
+        private final LssClientObserver mObserver;
+
+        private ScreenFrameDecoder(@NonNull final LssClientObserver observer) {
+            mObserver = observer;
+        }
+
+        public void postScreenFrame(@NonNull final ScreenFrame frame, @Nullable final Future<Bitmap> decodeFuture) {
+            final Future<Bitmap> supersededBitmap;
+            synchronized (mLock) {
+                if (mPendingScreenFrame != null) {
+                    Optional.ofNullable(mClientProfile).ifPresent(ClientProfile::addSkippedFrame);
+                }
+
+                if (ScreenFrameUtils.isKeyFrame(frame)) {
+                    supersededBitmap = mPendingScreenFrameBitmap;
+                    mPendingScreenFrameBitmap = decodeFuture;
+                } else {
+                    supersededBitmap = decodeFuture;
+                }
+                mPendingScreenFrame = ScreenFrameUtils.merge(mPendingScreenFrame, frame);
+                scheduleDecode();
+            }
+            Optional.ofNullable(supersededBitmap).ifPresent(LssClient.this::discardBitmap);
+        }
+
+        public void invalidate() {
+            synchronized (mLock) {
+                mIsInvalidated = true;
+                scheduleDecode();
+            }
+        }
+
+        private void scheduleDecode() {
+            if (mIsStopped || mIsDecoding || mPendingScreenFrame == null && !mIsInvalidated) {
+                return;
+            }
+
+            mIsDecoding = true;
+            try {
+                mScreenFrameDecodeExecutor.execute(this::decodePendingScreenFrame);
+            } catch (RejectedExecutionException e) {
+                mIsDecoding = false;
+            }
+        }
+
+        private void onDecodeCompleted() {
+            synchronized (mLock) {
+                mIsDecoding = false;
+                scheduleDecode();
+            }
+        }
+
+        private void decodePendingScreenFrame() {
+            final ScreenFrame pendingFrame;
+            final Future<Bitmap> decodeFuture;
+            final boolean isInvalidated;
+            synchronized (mLock) {
+                pendingFrame = mPendingScreenFrame;
+                decodeFuture = mPendingScreenFrameBitmap;
+                isInvalidated = mIsInvalidated;
+                mPendingScreenFrame = null;
+                mPendingScreenFrameBitmap = null;
+                mIsInvalidated = false;
+            }
+
+            final boolean isRefresh = pendingFrame == null;
+            final Bitmap bitmap;
+            if (mIsStopped) {
+                bitmap = null;
+            } else if (!isRefresh) {
+                bitmap = renderScreenFrame(pendingFrame, decodeFuture);
+            } else {
+                bitmap = isInvalidated ? refreshScreenFrame() : null;
+            }
+
+            final ScreenFrame frame = isRefresh ? mScreenFrameSource : pendingFrame;
+            if (bitmap == null || frame == null) {
+                mBitmapPool.release(bitmap);
+                onDecodeCompleted();
+                return;
+            }
+
+            ThreadUtils.runOnMainThread(() -> {
+                if (mIsStopped) {
+                    mBitmapPool.release(bitmap);
+                    return;
+                }
+
+                if (!mIsConnected) {
+                    mIsConnected = true;
+                    mObserver.onConnected();
+                }
+
+                final Reference<Bitmap> reference = new Reference<>(bitmap) {
+                    @Override
+                    public void clear() {
+                        super.clear();
+                        mBitmapPool.release(bitmap);
+                    }
+                };
+                if (mScreenFrameTimestamp > frame.getTimestamp()
+                    || mScreenFrameTimestamp == frame.getTimestamp() && !isRefresh) {
+                    reference.clear();
+                } else {
+                    mScreenFrameTimestamp = frame.getTimestamp();
+                    mObserver.onScreenFrameReceived(reference, frame.getSecure());
+                    if (!isRefresh) {
+                        sendScreenFrameAck(ScreenFrameAck.Type.TYPE_DISPLAYED, frame.getTimestamp());
+                    }
+                }
+                onDecodeCompleted();
+            });
+        }
+
+        @Nullable
+        private Bitmap renderScreenFrame(@NonNull final ScreenFrame frame,
+            @Nullable final Future<Bitmap> decodeFuture) {
+            final long startTimestamp = SystemClock.elapsedRealtimeNanos();
+            final boolean isKeyFrame = ScreenFrameUtils.isKeyFrame(frame);
+            if (isKeyFrame) {
+                mScreenFrameSource = frame;
+                mScreenFrameSize = getScreenFrameSize(frame);
+                Optional.ofNullable(mRegionDecoder).ifPresent(BitmapRegionDecoder::recycle);
+                mRegionDecoder = null;
+            } else if (mScreenFrameSource != null) {
+                mScreenFrameSource = ScreenFrameUtils.merge(mScreenFrameSource, frame);
+            }
+
+            final boolean isRendered;
+            if (isKeyFrame || isScreenFrameRegionChanged()) {
+                isRendered = renderScreenFrameSource(decodeFuture);
+            } else {
+                isRendered = mScreenFrameBitmap != null && decodeScreenTiles(frame.getTilesList());
+            }
+
+            if (!isRendered) {
+                return null;
+            }
+
+            final Bitmap bitmap = copyScreenFrameBitmap();
+            Optional.ofNullable(mClientProfile).ifPresent(clientProfile ->
+                clientProfile.addDecodedFrame(SystemClock.elapsedRealtimeNanos() - startTimestamp));
+            sendScreenFrameAck(ScreenFrameAck.Type.TYPE_DECODED, frame.getTimestamp());
+            return bitmap;
+        }
+
+        @Nullable
+        private Bitmap refreshScreenFrame() {
+            if (mScreenFrameBitmap == null || !isScreenFrameRegionChanged() || !renderScreenFrameSource(null)) {
+                return null;
+            }
+            return copyScreenFrameBitmap();
+        }
+
+        @SuppressWarnings("DataFlowIssue")
+        @NonNull
+        private Bitmap copyScreenFrameBitmap() {
+            final Bitmap bitmap = mBitmapPool.acquire(mScreenFrameBitmap.getWidth(), mScreenFrameBitmap.getHeight(),
+                Bitmap.Config.ARGB_8888);
+            new Canvas(bitmap).drawBitmap(mScreenFrameBitmap, 0f, 0f, null);
+            return bitmap;
+        }
+
+        private boolean isScreenFrameRegionChanged() {
+            if (mScreenFrameSize == null) {
+                return false;
+            }
+
+            final Rect region = getScreenFrameRegion(mScreenFrameSize);
+            return !region.equals(mScreenFrameRegion)
+                || getSampleSize(new Size(region.width(), region.height())) != mSampleSize;
+        }
+
+        private boolean renderScreenFrameSource(@Nullable final Future<Bitmap> decodeFuture) {
+            if (mScreenFrameSource == null || mScreenFrameSize == null) {
+                Optional.ofNullable(decodeFuture).ifPresent(LssClient.this::discardBitmap);
+                return false;
+            }
+
+            final Rect region = getScreenFrameRegion(mScreenFrameSize);
+            final Size regionSize = new Size(region.width(), region.height());
+            final boolean isFullFrame = regionSize.equals(mScreenFrameSize);
+            final ByteString data = mScreenFrameSource.getData();
+            mScreenFrameRegion = region;
+            mSampleSize = getSampleSize(regionSize);
+
+            boolean isDecoded = true;
+            if (data.isEmpty()) {
+                final Size sampledSize = getSampledSize(regionSize, mSampleSize);
+                ensureScreenFrameBitmap(sampledSize.getWidth(), sampledSize.getHeight());
+            } else if (decodeFuture != null && isFullFrame) {
+                mBitmapPool.release(mScreenFrameBitmap);
+                mScreenFrameBitmap = getBitmap(decodeFuture);
+                if (mScreenFrameBitmap == null) {
+                    isDecoded = false;
+                } else {
+                    mSampleSize = Math.max(1,
+                        Math.round((float) mScreenFrameSize.getWidth() / mScreenFrameBitmap.getWidth()));
+                }
+            } else {
+                Optional.ofNullable(decodeFuture).ifPresent(LssClient.this::discardBitmap);
+                isDecoded = isFullFrame ? decodeScreenFrame(data) : decodeScreenFrameRegion(data, region);
+            }
+
+            if (!isDecoded) {
+                mBitmapPool.release(mScreenFrameBitmap);
+                mScreenFrameBitmap = null;
+                mScreenFrameRegion = null;
+                return false;
+            }
+            return decodeScreenTiles(mScreenFrameSource.getTilesList());
+        }
+
+        @SuppressWarnings("DataFlowIssue")
+        private boolean decodeScreenFrame(@NonNull final ByteString data) {
+            copyScreenFrameData(data);
+
+            final Size sampledSize = getSampledSize(mScreenFrameSize, mSampleSize);
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = mSampleSize;
+            options.inBitmap = ensureScreenFrameBitmap(sampledSize.getWidth(), sampledSize.getHeight());
+            try {
+                return BitmapFactory.decodeByteArray(mScreenFrameData, 0, data.size(), options) != null;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private boolean decodeScreenFrameRegion(@NonNull final ByteString data, @NonNull final Rect region) {
+            if (mRegionDecoder == null) {
+                copyScreenFrameData(data);
+                try {
+                    mRegionDecoder = newRegionDecoder(mScreenFrameData, data.size());
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            final Size sampledSize = getSampledSize(new Size(region.width(), region.height()), mSampleSize);
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = mSampleSize;
+            options.inBitmap = ensureScreenFrameBitmap(sampledSize.getWidth(), sampledSize.getHeight());
+            try {
+                return mRegionDecoder.decodeRegion(region, options) != null;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private void copyScreenFrameData(@NonNull final ByteString data) {
+            if (mScreenFrameData.length < data.size()) {
+                mScreenFrameData = new byte[data.size()];
+            }
+            data.copyTo(mScreenFrameData, 0);
+        }
+
+        @NonNull
+        private Bitmap ensureScreenFrameBitmap(final int width, final int height) {
+            if (mScreenFrameBitmap == null || mScreenFrameBitmap.getWidth() != width
+                || mScreenFrameBitmap.getHeight() != height) {
+                mBitmapPool.release(mScreenFrameBitmap);
+                mScreenFrameBitmap = mBitmapPool.acquire(width, height, Bitmap.Config.ARGB_8888);
+            }
+            return mScreenFrameBitmap;
+        }
+
+        @SuppressWarnings("DataFlowIssue")
+        private boolean decodeScreenTiles(@NonNull final List<ScreenTile> tiles) {
+            final List<ScreenTile> visibleTiles = tiles.stream()
+                .filter(tile -> Optional.ofNullable(ScreenFrameUtils.getTileBounds(tile))
+                    .map(bounds -> Rect.intersects(bounds, mScreenFrameRegion))
+                    .orElse(true))
+                .collect(Collectors.toList());
+            if (visibleTiles.isEmpty()) {
+                return true;
+            }
+
+            final List<Bitmap> tileBitmaps = decodeTileBitmaps(visibleTiles, mSampleSize);
+            if (tileBitmaps == null) {
+                return false;
+            }
+
+            final Canvas canvas = new Canvas(mScreenFrameBitmap);
+            canvas.scale((float) mScreenFrameBitmap.getWidth() / mScreenFrameRegion.width(),
+                (float) mScreenFrameBitmap.getHeight() / mScreenFrameRegion.height());
+            canvas.translate(-mScreenFrameRegion.left, -mScreenFrameRegion.top);
+            for (int i = 0; i < tileBitmaps.size(); i++) {
+                final ScreenTile tile = visibleTiles.get(i);
+                final Bitmap tileBitmap = tileBitmaps.get(i);
+                final Rect bounds = Optional.ofNullable(ScreenFrameUtils.getTileBounds(tile))
+                    .orElse(new Rect(tile.getLeft(), tile.getTop(),
+                        tile.getLeft() + tileBitmap.getWidth() * mSampleSize,
+                        tile.getTop() + tileBitmap.getHeight() * mSampleSize));
+                canvas.drawBitmap(tileBitmap, null, bounds, mPaint);
+                mBitmapPool.release(tileBitmap);
+            }
+            return true;
+        }
+
+        @Nullable
+        private List<Bitmap> decodeTileBitmaps(@NonNull final List<ScreenTile> tiles, final int sampleSize) {
+            final List<Bitmap> tileBitmaps = new ArrayList<>(tiles.size());
+            if (tiles.size() == 1) {
+                final Bitmap tileBitmap = decodeTileBitmap(tiles.get(0), sampleSize);
+                if (tileBitmap == null) {
+                    return null;
+                }
+                tileBitmaps.add(tileBitmap);
+                return tileBitmaps;
+            }
+
+            final List<Callable<Bitmap>> tasks = tiles.stream()
+                .map(tile -> (Callable<Bitmap>) () -> decodeTileBitmap(tile, sampleSize))
+                .collect(Collectors.toList());
+            boolean isDecoded = true;
+            try {
+                for (final Future<Bitmap> future : mTileDecodePool.invokeAll(tasks)) {
+                    final Bitmap tileBitmap = future.get();
+                    if (tileBitmap == null) {
+                        isDecoded = false;
+                    } else {
+                        tileBitmaps.add(tileBitmap);
+                    }
+                }
+            } catch (InterruptedException | ExecutionException | RejectedExecutionException e) {
+                isDecoded = false;
+            }
+
+            if (!isDecoded) {
+                tileBitmaps.forEach(mBitmapPool::release);
+                return null;
+            }
+            return tileBitmaps;
+        }
+
+        @Nullable
+        private Bitmap decodeTileBitmap(@NonNull final ScreenTile tile, final int sampleSize) {
+            try (final InputStream input = tile.getData().newInput()) {
+                return decodeBitmap(input, ScreenFrameUtils.getJpegSize(tile.getData()), sampleSize);
+            } catch (IOException e) {
+                return null;
             }
-            bitmap.recycle();
         }
     }
 
     @Accessors(prefix = "m")
     private static class ClientProfile {
+        private static final double[] DECODE_TIME_BUCKETS =
+            {0.001d, 0.002d, 0.005d, 0.01d, 0.02d, 0.05d, 0.1d, 0.2d, 0.5d, 1d};
+
+        private long mCollectedInboundDataSize;
+
+        private long mCollectedDecodedFrameCount;
+
+        private long mCollectedSkippedFrameCount;
+
         @NonNull
         private final Object mLock = new Object();
 
@@ -270,21 +992,60 @@ public final class LssClient {
         @NonNull
         private final AtomicLong mInboundDataSize = new AtomicLong();
 
+        @NonNull
+        private final LongAdder mDecodedFrameCount = new LongAdder();
+
+        @NonNull
+        private final LongAdder mSkippedFrameCount = new LongAdder();
+
+        @NonNull
+        private final Histogram mDecodeTimeHistogram = new Histogram(DECODE_TIME_BUCKETS);
+
         public void addInboundDataSize(final long size) {
             mInboundDataSize.addAndGet(size);
         }
 
+        public void addDecodedFrame(final long decodeTime) {
+            mDecodedFrameCount.increment();
+            mDecodeTimeHistogram.record(decodeTime / 1e9d);
+        }
+
+        public void addSkippedFrame() {
+            mSkippedFrameCount.increment();
+        }
+
+        public void writeMetrics(@NonNull final MetricsWriter writer) {
+            writer.counter("lss_client_inbound_bytes_total", "Bytes received from the shared screen.",
+                    mInboundDataSize.get())
+                .counter("lss_client_decoded_frames_total", "Screen frames decoded for display.",
+                    mDecodedFrameCount.sum())
+                .counter("lss_client_skipped_frames_total", "Screen frames superseded before they were decoded.",
+                    mSkippedFrameCount.sum())
+                .histogram("lss_client_decode_duration_seconds", "Time spent decoding a screen frame.",
+                    mDecodeTimeHistogram);
+        }
+
         @NonNull
         public LssClientStats collect() {
             synchronized (mLock) {
                 final long startTimestamp = mCollectionTimestamp.getAndSet(SystemClock.elapsedRealtimeNanos());
                 final long endTimestamp = mCollectionTimestamp.get();
-                final long inboundDataSize = mInboundDataSize.getAndSet(0L);
+                final long totalInboundDataSize = mInboundDataSize.get();
+                final long inboundDataSize = totalInboundDataSize - mCollectedInboundDataSize;
+                mCollectedInboundDataSize = totalInboundDataSize;
+                final long totalDecodedFrameCount = mDecodedFrameCount.sum();
+                final long decodedFrameCount = totalDecodedFrameCount - mCollectedDecodedFrameCount;
+                mCollectedDecodedFrameCount = totalDecodedFrameCount;
+                final long totalSkippedFrameCount = mSkippedFrameCount.sum();
+                final long skippedFrameCount = totalSkippedFrameCount - mCollectedSkippedFrameCount;
+                mCollectedSkippedFrameCount = totalSkippedFrameCount;
                 final long inboundDataRate = Math.round((double) inboundDataSize / (endTimestamp - startTimestamp)
                     * Duration.ofSeconds(1L).toNanos());
                 return LssClientStats.builder()
                     .inboundDataSize(inboundDataSize)
                     .inboundDataRate(inboundDataRate)
+                    .decodedFrameCount(decodedFrameCount)
+                    .skippedFrameCount(skippedFrameCount)
                     .build();
             }
         }
@@ -14,4 +14,8 @@ public class LssClientStats {
     private final long mInboundDataSize;
 
     private final long mInboundDataRate;
+
+    private final long mDecodedFrameCount;
+
+    private final long mSkippedFrameCount;
 }
@@ -0,0 +1,103 @@
+package com.obby.android.localscreenshare.client;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+final class ScreenFrameChunkInputStream extends InputStream {
+    private boolean mIsFinished;
+
+    private boolean mIsAborted;
+
+    @Nullable
+    private ByteString mChunk;
+
+    private int mChunkOffset;
+
+    @NonNull
+    private final Deque<ByteString> mChunks = new ArrayDeque<>();
+
+    public synchronized void write(@NonNull final ByteString chunk) {
+        mChunks.addLast(chunk);
+        notifyAll();
+    }
+
+    public synchronized void finish() {
+        mIsFinished = true;
+        notifyAll();
+    }
+
+    public synchronized void abort() {
+        mIsAborted = true;
+        mChunks.clear();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        final ByteString chunk = awaitChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        return chunk.byteAt(mChunkOffset++) & 0xff;
+    }
+
+    @Override
+    public synchronized int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        final ByteString chunk = awaitChunk();
+        if (chunk == null) {
+            return -1;
+        }
+
+        final int size = Math.min(len, chunk.size() - mChunkOffset);
+        chunk.copyTo(b, mChunkOffset, off, size);
+        mChunkOffset += size;
+        return size;
+    }
+
+    @Override
+    public synchronized int available() {
+        return mChunk == null ? 0 : mChunk.size() - mChunkOffset;
+    }
+
+    @Nullable
+    private ByteString awaitChunk() throws IOException {
+        while (true) {
+            if (mIsAborted) {
+                throw new IOException("Screen frame aborted");
+            }
+
+            if (mChunk != null && mChunkOffset < mChunk.size()) {
+                return mChunk;
+            }
+
+            mChunk = mChunks.pollFirst();
+            mChunkOffset = 0;
+            if (mChunk != null) {
+                continue;
+            }
+
+            if (mIsFinished) {
+                return null;
+            }
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.obby.android.localscreenshare.client;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+import io.grpc.stub.StreamObserver;
+
+final class ScreenFrameMulticastReceiver implements ScreenFrameReceiver {
+    private static final int RECEIVE_TIMEOUT_MS = (int) Duration.ofSeconds(5L).toMillis();
+
+    private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MAX_PENDING_FRAMES = 4;
+
+    private static final int MAX_FRAME_ID_LAG = 256;
+
+    private volatile boolean mIsStopped;
+
+    private boolean mIsSynchronized;
+
+    private boolean mHasFrameId;
+
+    private int mFrameId;
+
+    private final String mTag = "ScreenFrameMulticastReceiver@" + hashCode();
+
+    @NonNull
+    private final InetSocketAddress mAddress;
+
+    @NonNull
+    private final StreamObserver<ScreenFrame> mObserver;
+
+    @NonNull
+    private final LongConsumer mInboundDataSizeConsumer;
+
+    @NonNull
+    private final Map<Integer, FrameAssembly> mFrameAssemblies = new LinkedHashMap<>();
+
+    @NonNull
+    private final Thread mThread = new Thread(this::receive, "lss-screen-frame-multicast-receiver");
+
+    @Nullable
+    private volatile MulticastSocket mSocket;
+
+    ScreenFrameMulticastReceiver(@NonNull final InetSocketAddress address,
+        @NonNull final StreamObserver<ScreenFrame> observer, @NonNull final LongConsumer inboundDataSizeConsumer) {
+        mAddress = address;
+        mObserver = observer;
+        mInboundDataSizeConsumer = inboundDataSizeConsumer;
+    }
+
+    @Override
+    public void start() {
+        mThread.start();
+    }
+
+    @Override
+    public void stop() {
+        mIsStopped = true;
+        Optional.ofNullable(mSocket).ifPresent(MulticastSocket::close);
+        mThread.interrupt();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void receive() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        try (final MulticastSocket socket = new MulticastSocket(mAddress.getPort())) {
+            mSocket = socket;
+            socket.setSoTimeout(RECEIVE_TIMEOUT_MS);
+            socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+            socket.joinGroup(mAddress.getAddress());
+
+            final byte[] buffer = new byte[Constants.MULTICAST_PACKET_SIZE];
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (!mIsStopped) {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                mInboundDataSizeConsumer.accept(packet.getLength());
+                onPacketReceived(ByteBuffer.wrap(packet.getData(), 0, packet.getLength()));
+            }
+        } catch (SocketTimeoutException e) {
+            Log.w(mTag, "receive: receive timeout");
+            if (!mIsStopped) {
+                mObserver.onError(e);
+            }
+        } catch (IOException e) {
+            if (!mIsStopped) {
+                Log.e(mTag, "receive: receive failed", e);
+                mObserver.onError(e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void onPacketReceived(@NonNull final ByteBuffer packet) {
+        if (packet.remaining() < Constants.MULTICAST_PACKET_HEADER_SIZE) {
+            return;
+        }
+
+        final int frameId = packet.getInt();
+        final int packetIndex = packet.getShort() & 0xffff;
+        final int packetCount = packet.getShort() & 0xffff;
+        if (mHasFrameId && mFrameId - frameId > MAX_FRAME_ID_LAG) {
+            mHasFrameId = false;
+            mIsSynchronized = false;
+            mFrameAssemblies.clear();
+        }
+
+        if (packetCount == 0 || packetIndex >= packetCount || mHasFrameId && frameId - mFrameId <= 0) {
+            return;
+        }
+
+        FrameAssembly frameAssembly = mFrameAssemblies.get(frameId);
+        if (frameAssembly == null) {
+            if (mFrameAssemblies.size() >= MAX_PENDING_FRAMES) {
+                final Iterator<Integer> iterator = mFrameAssemblies.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+            frameAssembly = new FrameAssembly(packetCount);
+            mFrameAssemblies.put(frameId, frameAssembly);
+        } else if (frameAssembly.getPacketCount() != packetCount) {
+            return;
+        }
+
+        final byte[] payload = new byte[packet.remaining()];
+        packet.get(payload);
+        if (!frameAssembly.add(packetIndex, payload)) {
+            return;
+        }
+
+        final boolean isContiguous = mHasFrameId && frameId - mFrameId == 1;
+        mFrameAssemblies.keySet().removeIf(id -> id - frameId <= 0);
+        mHasFrameId = true;
+        mFrameId = frameId;
+
+        final ScreenFrame frame;
+        try {
+            frame = ScreenFrame.parseFrom(frameAssembly.getData());
+        } catch (InvalidProtocolBufferException e) {
+            mIsSynchronized = false;
+            return;
+        }
+
+        mIsSynchronized = ScreenFrameUtils.isKeyFrame(frame) || mIsSynchronized && isContiguous;
+        if (mIsSynchronized) {
+            mObserver.onNext(frame);
+        }
+    }
+
+    private static class FrameAssembly {
+        @NonNull
+        private final byte[][] mPayloads;
+
+        private int mPayloadCount;
+
+        private int mSize;
+
+        private FrameAssembly(final int packetCount) {
+            mPayloads = new byte[packetCount][];
+        }
+
+        private int getPacketCount() {
+            return mPayloads.length;
+        }
+
+        private boolean add(final int packetIndex, @NonNull final byte[] payload) {
+            if (mPayloads[packetIndex] == null) {
+                mPayloads[packetIndex] = payload;
+                mPayloadCount++;
+                mSize += payload.length;
+            }
+            return mPayloadCount == mPayloads.length;
+        }
+
+        @NonNull
+        private byte[] getData() {
+            final ByteBuffer data = ByteBuffer.allocate(mSize);
+            for (final byte[] payload : mPayloads) {
+                data.put(payload);
+            }
+            return data.array();
+        }
+    }
+}
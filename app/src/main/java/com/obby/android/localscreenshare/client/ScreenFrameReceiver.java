@@ -0,0 +1,7 @@
+package com.obby.android.localscreenshare.client;
+
+interface ScreenFrameReceiver {
+    void start();
+
+    void stop();
+}
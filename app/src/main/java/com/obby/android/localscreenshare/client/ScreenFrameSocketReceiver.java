@@ -0,0 +1,101 @@
+package com.obby.android.localscreenshare.client;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+import io.grpc.stub.StreamObserver;
+
+final class ScreenFrameSocketReceiver implements ScreenFrameReceiver {
+    private static final int CONNECT_TIMEOUT_MS = (int) Duration.ofSeconds(5L).toMillis();
+
+    private static final int RECEIVE_BUFFER_SIZE = 1024 * 1024;
+
+    private volatile boolean mIsStopped;
+
+    @Nullable
+    private volatile Socket mSocket;
+
+    private final String mTag = "ScreenFrameSocketReceiver@" + hashCode();
+
+    @NonNull
+    private final InetSocketAddress mAddress;
+
+    @NonNull
+    private final StreamObserver<ScreenFrame> mObserver;
+
+    @NonNull
+    private final LongConsumer mInboundDataSizeConsumer;
+
+    @NonNull
+    private final Thread mThread = new Thread(this::receive, "lss-screen-frame-socket-receiver");
+
+    ScreenFrameSocketReceiver(@NonNull final InetSocketAddress address,
+        @NonNull final StreamObserver<ScreenFrame> observer, @NonNull final LongConsumer inboundDataSizeConsumer) {
+        mAddress = address;
+        mObserver = observer;
+        mInboundDataSizeConsumer = inboundDataSizeConsumer;
+    }
+
+    @Override
+    public void start() {
+        mThread.start();
+    }
+
+    @Override
+    public void stop() {
+        mIsStopped = true;
+        Optional.ofNullable(mSocket).ifPresent(socket -> {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        });
+        mThread.interrupt();
+    }
+
+    private void receive() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        try (final Socket socket = new Socket()) {
+            mSocket = socket;
+            socket.setTcpNoDelay(true);
+            socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+            socket.connect(mAddress, CONNECT_TIMEOUT_MS);
+
+            final DataInputStream input =
+                new DataInputStream(new BufferedInputStream(socket.getInputStream(), RECEIVE_BUFFER_SIZE));
+            while (!mIsStopped) {
+                final int size = input.readInt();
+                if (size < 0 || size > Constants.GRPC_MAX_INBOUND_MESSAGE_SIZE) {
+                    throw new IOException(String.format("invalid screen frame size %d", size));
+                }
+
+                final byte[] data = new byte[size];
+                input.readFully(data);
+                mInboundDataSizeConsumer.accept(Integer.BYTES + size);
+                mObserver.onNext(ScreenFrame.parseFrom(data));
+            }
+        } catch (IOException e) {
+            if (!mIsStopped) {
+                Log.e(mTag, "receive: receive failed", e);
+                mObserver.onError(e);
+            }
+        }
+    }
+}
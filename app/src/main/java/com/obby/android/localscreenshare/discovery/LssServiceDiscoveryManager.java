@@ -17,7 +17,9 @@ import com.obby.android.localscreenshare.utils.ThreadUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -25,6 +27,9 @@ import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -33,6 +38,8 @@ import lombok.NoArgsConstructor;
 public final class LssServiceDiscoveryManager {
     private static final String TAG = "LssServiceDiscoveryManager";
 
+    private static final int RELAY_HOP_LOAD = 2;
+
     private boolean mIsDiscovering;
 
     @NonNull
@@ -111,13 +118,17 @@ public final class LssServiceDiscoveryManager {
 
                         mNsdServiceInfoMap.put(serviceName, serviceInfo);
 
-                        if (lssServiceInfo == null
-                            || Objects.equals(lssServiceInfo.getId(), Preferences.get().getServiceId())) {
+                        final String serviceId = Preferences.get().getServiceId();
+                        if (lssServiceInfo == null || Objects.equals(lssServiceInfo.getId(), serviceId)
+                            || serviceName.startsWith(serviceId)
+                            || lssServiceInfo.getRelayChain().contains(serviceId)) {
                             mServiceInfoMap.remove(serviceName);
                         } else {
                             mServiceInfoMap.entrySet()
                                 .stream()
-                                .filter(entry -> Objects.equals(entry.getValue().getId(), lssServiceInfo.getId()))
+                                .filter(entry -> !Objects.equals(entry.getKey(), serviceName)
+                                    && Objects.equals(entry.getValue().getId(), lssServiceInfo.getId())
+                                    && Objects.equals(entry.getValue().getRelayChain(), lssServiceInfo.getRelayChain()))
                                 .map(Map.Entry::getKey)
                                 .forEach(mServiceInfoMap::remove);
                             mServiceInfoMap.put(serviceName, lssServiceInfo);
@@ -190,7 +201,13 @@ public final class LssServiceDiscoveryManager {
     }
 
     private void updateServiceInfoList() {
-        final List<LssServiceInfo> serviceInfoList = new ArrayList<>(mServiceInfoMap.values());
+        final List<LssServiceInfo> serviceInfoList = new ArrayList<>(mServiceInfoMap.values()
+            .stream()
+            .collect(Collectors.toMap(LssServiceInfo::getId, Function.identity(),
+                BinaryOperator.minBy(Comparator.comparingInt(LssServiceDiscoveryManager::getRelayCost)
+                    .thenComparingInt(LssServiceInfo::getHopCount)
+                    .thenComparing(Comparator.naturalOrder()))))
+            .values());
         Collections.sort(serviceInfoList);
 
         if (Objects.equals(mServiceInfoList, serviceInfoList)) {
@@ -213,6 +230,15 @@ public final class LssServiceDiscoveryManager {
         final String name = Optional.ofNullable(attributes.get(Constants.NSD_SERVICE_ATTR_NAME))
             .map(value -> new String(value, StandardCharsets.UTF_8))
             .orElse(null);
+        final String multicastGroup = Optional.ofNullable(attributes.get(Constants.NSD_SERVICE_ATTR_MULTICAST_GROUP))
+            .map(value -> new String(value, StandardCharsets.UTF_8))
+            .orElse(null);
+        final List<String> relayChain = Optional.ofNullable(attributes.get(Constants.NSD_SERVICE_ATTR_RELAY_CHAIN))
+            .map(value -> Arrays.stream(new String(value, StandardCharsets.UTF_8)
+                    .split(Constants.NSD_SERVICE_RELAY_CHAIN_SEPARATOR))
+                .filter(relayId -> !relayId.isEmpty())
+                .collect(Collectors.toUnmodifiableList()))
+            .orElse(Collections.emptyList());
         final String hostAddress = Optional.ofNullable(serviceInfo.getHost())
             .map(NetUtils::getHostAddress)
             .orElse(null);
@@ -225,9 +251,29 @@ public final class LssServiceDiscoveryManager {
             .name(name)
             .hostAddress(hostAddress)
             .port(serviceInfo.getPort())
+            .hopCount(getIntAttribute(attributes, Constants.NSD_SERVICE_ATTR_HOP_COUNT))
+            .load(getIntAttribute(attributes, Constants.NSD_SERVICE_ATTR_LOAD))
+            .multicastGroup(TextUtils.isEmpty(multicastGroup) ? null : multicastGroup)
+            .multicastPort(getIntAttribute(attributes, Constants.NSD_SERVICE_ATTR_MULTICAST_PORT))
+            .socketPort(getIntAttribute(attributes, Constants.NSD_SERVICE_ATTR_SOCKET_PORT))
+            .relayChain(relayChain)
             .build();
     }
 
+    private static int getIntAttribute(@NonNull final Map<String, byte[]> attributes, @NonNull final String key) {
+        try {
+            return Optional.ofNullable(attributes.get(key))
+                .map(value -> Math.max(0, Integer.parseInt(new String(value, StandardCharsets.UTF_8))))
+                .orElse(0);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int getRelayCost(@NonNull final LssServiceInfo serviceInfo) {
+        return serviceInfo.getLoad() + serviceInfo.getHopCount() * RELAY_HOP_LOAD;
+    }
+
     private static class NsdDiscoveryListenerWrapper implements NsdManager.DiscoveryListener {
         @NonNull
         private final NsdManager.DiscoveryListener mListener;
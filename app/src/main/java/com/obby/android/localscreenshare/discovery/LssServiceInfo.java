@@ -4,8 +4,10 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Comparator;
+import java.util.List;
 
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -47,12 +49,32 @@ public class LssServiceInfo implements Comparable<LssServiceInfo>, Parcelable {
 
     private final int mPort;
 
+    private final int mHopCount;
+
+    private final int mLoad;
+
+    @Nullable
+    private final String mMulticastGroup;
+
+    private final int mMulticastPort;
+
+    private final int mSocketPort;
+
+    @NonNull
+    private final List<String> mRelayChain;
+
     @SuppressWarnings("DataFlowIssue")
     private LssServiceInfo(@NonNull final Parcel in) {
         mId = in.readString();
         mName = in.readString();
         mHostAddress = in.readString();
         mPort = in.readInt();
+        mHopCount = in.readInt();
+        mLoad = in.readInt();
+        mMulticastGroup = in.readString();
+        mMulticastPort = in.readInt();
+        mSocketPort = in.readInt();
+        mRelayChain = in.createStringArrayList();
     }
 
     @Override
@@ -71,5 +93,11 @@ public class LssServiceInfo implements Comparable<LssServiceInfo>, Parcelable {
         dest.writeString(mName);
         dest.writeString(mHostAddress);
         dest.writeInt(mPort);
+        dest.writeInt(mHopCount);
+        dest.writeInt(mLoad);
+        dest.writeString(mMulticastGroup);
+        dest.writeInt(mMulticastPort);
+        dest.writeInt(mSocketPort);
+        dest.writeStringList(mRelayChain);
     }
 }
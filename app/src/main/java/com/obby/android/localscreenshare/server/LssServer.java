@@ -18,44 +18,76 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 
-import com.google.protobuf.Empty;
+import com.obby.android.localscreenshare.discovery.LssServiceInfo;
+import com.obby.android.localscreenshare.grpc.screenstream.ClockProbe;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
 import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrameAck;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamRequest;
 import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamServiceGrpc;
 import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.Histogram;
+import com.obby.android.localscreenshare.support.MetricsWriter;
 import com.obby.android.localscreenshare.support.Preferences;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
 import com.obby.android.localscreenshare.utils.NetUtils;
 import com.obby.android.localscreenshare.utils.NsdUtils;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
 
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import io.grpc.Attributes;
+import io.grpc.Contexts;
 import io.grpc.Grpc;
 import io.grpc.InsecureServerCredentials;
 import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.ServerStreamTracer;
 import io.grpc.ServerTransportFilter;
 import io.grpc.okhttp.OkHttpServerBuilder;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
-import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -64,6 +96,10 @@ import lombok.experimental.Accessors;
 public final class LssServer {
     private static final long UPDATE_SERVER_STATS_INTERVAL_MS = 3000L;
 
+    private static final long UPDATE_RATE_CONTROLLER_INTERVAL_MS = 1000L;
+
+    private static final long REREGISTER_NSD_SERVICE_DELAY_MS = 10000L;
+
     @Nullable
     private LssServerInfo mServerInfo;
 
@@ -76,6 +112,14 @@ public final class LssServer {
     @Nullable
     private LssServerStats mServerStats;
 
+    private int mLoad;
+
+    private int mAdvertisedLoad;
+
+    private boolean mIsNsdServiceReregistering;
+
+    private boolean mIsNsdServiceReregisterScheduled;
+
     @Setter
     @Nullable
     private LssServerInfoListener mServerInfoListener;
@@ -84,11 +128,22 @@ public final class LssServer {
     @Nullable
     private LssServerStatsListener mServerStatsListener;
 
+    @Setter
+    @Nullable
+    private Supplier<List<LssServerStats.PipelineStageStats>> mPipelineStatsSupplier;
+
+    @Setter
+    @Nullable
+    private Supplier<Float> mFrameRateSupplier;
+
     private final String mTag = "LssServer@" + hashCode();
 
     @NonNull
     private final Context mContext;
 
+    @Nullable
+    private final LssServiceInfo mRelaySource;
+
     @NonNull
     private final NsdManager mNsdManager;
 
@@ -99,8 +154,8 @@ public final class LssServer {
     private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     @NonNull
-    private final ExecutorService mGrpcServerExecutor = new ThreadPoolExecutor(Constants.CPU_COUNT,
-        Constants.CPU_COUNT * 2, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(10), new BasicThreadFactory.Builder()
+    private final ThreadPoolExecutor mGrpcServerExecutor = new ThreadPoolExecutor(Constants.CPU_COUNT,
+        Constants.CPU_COUNT, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
         .namingPattern("lss-grpc-server-%d")
         .wrappedFactory(runnable -> new Thread(runnable) {
             @Override
@@ -109,10 +164,26 @@ public final class LssServer {
                 super.run();
             }
         })
-        .build(), new ThreadPoolExecutor.CallerRunsPolicy());
+        .build());
 
     @NonNull
-    private final ScreenStreamService mScreenStreamService = new ScreenStreamService(mGrpcServerExecutor);
+    private final ScheduledThreadPoolExecutor mScreenFrameSenderExecutor = new ScheduledThreadPoolExecutor(
+        Constants.CPU_COUNT, new BasicThreadFactory.Builder()
+        .namingPattern("lss-screen-frame-sender-%d")
+        .wrappedFactory(runnable -> new Thread(runnable) {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                super.run();
+            }
+        })
+        .build());
+
+    @NonNull
+    private final ScreenStreamService mScreenStreamService;
+
+    @NonNull
+    private final List<ScreenFrameTransport> mScreenFrameTransports = new CopyOnWriteArrayList<>();
 
     @NonNull
     private final ServerTransportFilter mServerTransportFilter = new ServerTransportFilter() {
@@ -175,15 +246,49 @@ public final class LssServer {
     };
 
     @NonNull
-    private final Server mGrpcServer =
-        OkHttpServerBuilder.forPort(Preferences.get().getServerPort(), InsecureServerCredentials.create())
-            .flowControlWindow(Constants.GRPC_FLOW_CONTROL_WINDOW)
-            .maxInboundMessageSize(Constants.GRPC_MAX_INBOUND_MESSAGE_SIZE)
-            .executor(mGrpcServerExecutor)
-            .addTransportFilter(mServerTransportFilter)
-            .addStreamTracerFactory(mServerStreamTracerFactory)
-            .addService(mScreenStreamService)
-            .build();
+    private final ScreenFrameTransport.Listener mScreenFrameTransportListener = new ScreenFrameTransport.Listener() {
+        @Override
+        public void onConnectionOpened(@NonNull InetSocketAddress remoteAddress) {
+            Optional.ofNullable(mServerProfile).ifPresent(serverProfile -> serverProfile.addTransport(remoteAddress));
+        }
+
+        @Override
+        public void onConnectionClosed(@NonNull InetSocketAddress remoteAddress) {
+            Optional.ofNullable(mServerProfile)
+                .ifPresent(serverProfile -> serverProfile.removeTransport(remoteAddress));
+        }
+
+        @Override
+        public void onDataSent(@NonNull InetSocketAddress remoteAddress, long size) {
+            Optional.ofNullable(mServerProfile)
+                .map(serverProfile -> serverProfile.getTransport(remoteAddress))
+                .ifPresent(transportProfile -> transportProfile.addOutboundDataSize(size));
+        }
+
+        @Override
+        public void onFrameSent(@NonNull InetSocketAddress remoteAddress) {
+            Optional.ofNullable(mServerProfile)
+                .map(serverProfile -> serverProfile.getTransport(remoteAddress))
+                .ifPresent(ServerProfile.TransportProfile::addSentFrame);
+        }
+
+        @Override
+        public void onFrameDropped(@NonNull InetSocketAddress remoteAddress) {
+            Optional.ofNullable(mServerProfile)
+                .map(serverProfile -> serverProfile.getTransport(remoteAddress))
+                .ifPresent(ServerProfile.TransportProfile::addDroppedFrame);
+        }
+
+        @Override
+        public void onStalled(@NonNull InetSocketAddress remoteAddress, long duration) {
+            Optional.ofNullable(mServerProfile)
+                .map(serverProfile -> serverProfile.getTransport(remoteAddress))
+                .ifPresent(transportProfile -> transportProfile.addStallTime(duration));
+        }
+    };
+
+    @NonNull
+    private final Server mGrpcServer;
 
     @NonNull
     private final Runnable mResolveNsdServiceRunnable = new Runnable() {
@@ -204,7 +309,12 @@ public final class LssServer {
                 return;
             }
 
-            final LssServerStats serverStats = mServerProfile.collect();
+            final LssServerStats serverStats = mServerProfile.collect(Optional.ofNullable(mPipelineStatsSupplier)
+                .map(Supplier::get)
+                .orElse(Collections.emptyList()), Optional.ofNullable(mFrameRateSupplier)
+                .map(Supplier::get)
+                .orElse(0f), getEncodeQuality(ScreenEncoding.getDefaultInstance()),
+                getEncodeScale(ScreenEncoding.getDefaultInstance()));
             if (Objects.equals(mServerStats, serverStats)) {
                 Log.w(mTag, "mUpdateServerStatsRunnable: server stats not changed");
             } else {
@@ -217,10 +327,41 @@ public final class LssServer {
                 }
             }
 
+            updateLoad(serverStats.getTransports().size());
+
             mMainHandler.postDelayed(mUpdateServerStatsRunnable, UPDATE_SERVER_STATS_INTERVAL_MS);
         }
     };
 
+    @NonNull
+    private final Runnable mUpdateRateControllerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mMainHandler.removeCallbacks(mUpdateRateControllerRunnable);
+            mScreenStreamService.updateRateControllers();
+            mMainHandler.postDelayed(mUpdateRateControllerRunnable, UPDATE_RATE_CONTROLLER_INTERVAL_MS);
+        }
+    };
+
+    @NonNull
+    private final Runnable mReregisterNsdServiceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsNsdServiceReregisterScheduled = false;
+            if (mServerInfo == null || mNsdServiceInfo == null || mAdvertisedLoad == mLoad) {
+                return;
+            }
+
+            Log.i(mTag, String.format("mReregisterNsdServiceRunnable: load changed, re-register service, load = %d",
+                mLoad));
+            mNsdServiceInfo = buildNsdServiceInfo(mServerInfo);
+            if (!mIsNsdServiceReregistering) {
+                mIsNsdServiceReregistering = true;
+                mNsdManager.unregisterService(mNsdRegistrationListener);
+            }
+        }
+    };
+
     @NonNull
     private final NsdManager.RegistrationListener mNsdRegistrationListener = new NsdManager.RegistrationListener() {
         @Override
@@ -255,6 +396,15 @@ public final class LssServer {
         public void onServiceUnregistered(NsdServiceInfo serviceInfo) {
             Log.i(mTag, String.format("mNsdRegistrationListener.onServiceUnregistered: service unregistered"
                 + ", serviceInfo = %s", serviceInfo));
+            mMainHandler.post(() -> {
+                if (!mIsNsdServiceReregistering) {
+                    return;
+                }
+                mIsNsdServiceReregistering = false;
+                if (mNsdServiceInfo != null) {
+                    mNsdManager.registerService(mNsdServiceInfo, NsdManager.PROTOCOL_DNS_SD, mNsdRegistrationListener);
+                }
+            });
         }
     };
 
@@ -320,17 +470,61 @@ public final class LssServer {
     };
 
     public LssServer(@NonNull final Context context) {
+        this(context, null);
+    }
+
+    public LssServer(@NonNull final Context context, @Nullable final LssServiceInfo relaySource) {
         mContext = context;
+        mRelaySource = relaySource;
         mNsdManager = mContext.getSystemService(NsdManager.class);
         mConnectivityManager = mContext.getSystemService(ConnectivityManager.class);
+        mScreenStreamService = new ScreenStreamService(mScreenFrameSenderExecutor, mRelaySource != null,
+            Preferences.get().getProjectionQuality(), remoteAddress -> Optional.ofNullable(mServerProfile)
+                .map(serverProfile -> serverProfile.getTransport(remoteAddress))
+                .orElse(null));
+        mGrpcServer = OkHttpServerBuilder.forPort(mRelaySource == null ? Preferences.get().getServerPort() : 0,
+                InsecureServerCredentials.create())
+            .flowControlWindow(Constants.GRPC_FLOW_CONTROL_WINDOW)
+            .maxInboundMessageSize(Constants.GRPC_MAX_INBOUND_MESSAGE_SIZE)
+            .executor(mGrpcServerExecutor)
+            .addTransportFilter(mServerTransportFilter)
+            .addStreamTracerFactory(mServerStreamTracerFactory)
+            .addService(mScreenStreamService)
+            .build();
     }
 
     public void start() throws IOException {
         mGrpcServer.start();
 
+        if (mRelaySource == null && Preferences.get().isProjectionMulticast()) {
+            try {
+                mScreenFrameTransports.add(new ScreenFrameMulticaster(
+                    getMulticastGroup(Preferences.get().getServiceId()), mGrpcServer.getPort()));
+            } catch (IOException e) {
+                Log.e(mTag, "start: create screen frame multicaster failed", e);
+            }
+        }
+
+        if (mRelaySource == null && Preferences.get().isProjectionSocketTransport()) {
+            try {
+                mScreenFrameTransports.add(new ScreenFrameSocketTransport(mScreenFrameTransportListener));
+            } catch (IOException e) {
+                Log.e(mTag, "start: create screen frame socket transport failed", e);
+            }
+        }
+
+        if (mRelaySource == null && Preferences.get().isMjpegServerEnabled()) {
+            try {
+                mScreenFrameTransports.add(new ScreenFrameMjpegTransport(Preferences.get().getMjpegServerPort(),
+                    mScreenFrameTransportListener));
+            } catch (IOException e) {
+                Log.e(mTag, "start: create screen frame mjpeg transport failed", e);
+            }
+        }
+
         mServerInfo = LssServerInfo.builder()
-            .id(Preferences.get().getServiceId())
-            .name(Preferences.get().getServiceName())
+            .id(mRelaySource == null ? Preferences.get().getServiceId() : mRelaySource.getId())
+            .name(mRelaySource == null ? Preferences.get().getServiceName() : mRelaySource.getName())
             .hostAddress(Constants.UNKNOWN_HOST_ADDRESS)
             .port(mGrpcServer.getPort())
             .build();
@@ -348,6 +542,7 @@ public final class LssServer {
 
         mServerProfile = new ServerProfile();
         mMainHandler.postDelayed(mUpdateServerStatsRunnable, UPDATE_SERVER_STATS_INTERVAL_MS);
+        mMainHandler.postDelayed(mUpdateRateControllerRunnable, UPDATE_RATE_CONTROLLER_INTERVAL_MS);
     }
 
     public void stop() {
@@ -355,6 +550,7 @@ public final class LssServer {
         mNsdServiceInfo = null;
         mServerProfile = null;
         mServerStats = null;
+        mIsNsdServiceReregisterScheduled = false;
         mMainHandler.removeCallbacksAndMessages(null);
 
         try {
@@ -377,11 +573,62 @@ public final class LssServer {
 
         mGrpcServer.shutdownNow();
         mScreenStreamService.stop();
+        mScreenFrameTransports.forEach(ScreenFrameTransport::release);
+        mScreenFrameTransports.clear();
+        mScreenFrameSenderExecutor.shutdownNow();
         mGrpcServerExecutor.shutdownNow();
     }
 
-    public void postScreenFrame(@NonNull final ScreenFrame frame) {
-        mScreenStreamService.postScreenFrame(frame);
+    public void postScreenFrames(@NonNull final Map<ScreenEncoding, ScreenFrame> frames) {
+        mScreenStreamService.postScreenFrames(frames);
+        mScreenFrameTransports.forEach(transport -> transport.postScreenFrames(frames));
+    }
+
+    @NonNull
+    public Set<ScreenEncoding> getScreenEncodings() {
+        if (mScreenFrameTransports.isEmpty()) {
+            return mScreenStreamService.getScreenEncodings();
+        }
+
+        final Set<ScreenEncoding> encodings = new HashSet<>(mScreenStreamService.getScreenEncodings());
+        mScreenFrameTransports.forEach(transport -> encodings.addAll(transport.getScreenEncodings()));
+        return encodings;
+    }
+
+    public int getMaxFrameRate() {
+        return mScreenStreamService.getMaxFrameRate();
+    }
+
+    public void writeMetrics(@NonNull final MetricsWriter writer) {
+        mScreenStreamService.getRateControllers().forEach((encoding, rateController) -> {
+            final String encodingLabel = String.format("%dx%d@%d", encoding.getMaxWidth(),
+                encoding.getMaxHeight(), encoding.getQuality());
+            writer.gauge("lss_server_encode_quality", "Current JPEG quality chosen by the rate controller.",
+                    rateController.getQuality(), "encoding", encodingLabel)
+                .gauge("lss_server_encode_scale", "Current encode scale chosen by the rate controller.",
+                    rateController.getScale(), "encoding", encodingLabel);
+        });
+        writer.gauge("lss_executor_queue_depth", "Tasks waiting in an executor queue.",
+                mGrpcServerExecutor.getQueue().size(), "executor", "grpc-server")
+            .gauge("lss_executor_queue_depth", "Tasks waiting in an executor queue.",
+                mScreenFrameSenderExecutor.getQueue().size(), "executor", "screen-frame-sender");
+        Optional.ofNullable(mServerProfile).ifPresent(serverProfile -> serverProfile.writeMetrics(writer));
+    }
+
+    public void suppressScreenFrame() {
+        Optional.ofNullable(mServerProfile).ifPresent(ServerProfile::addSuppressedFrame);
+    }
+
+    public int getEncodeQuality(@NonNull final ScreenEncoding encoding) {
+        return mScreenStreamService.getEncodeQuality(encoding);
+    }
+
+    public int getEncodeScale(@NonNull final ScreenEncoding encoding) {
+        return mScreenStreamService.getEncodeScale(encoding);
+    }
+
+    public void setMaxEncodeQuality(final int quality) {
+        mScreenStreamService.setMaxQuality(quality);
     }
 
     private void updateServerInfo(@NonNull final LssServerInfo serverInfo) {
@@ -398,6 +645,20 @@ public final class LssServer {
         }
     }
 
+    private void updateLoad(final int load) {
+        if (mLoad == load) {
+            return;
+        }
+
+        mLoad = load;
+        if (mServerInfo == null || mNsdServiceInfo == null || mIsNsdServiceReregisterScheduled) {
+            return;
+        }
+
+        mIsNsdServiceReregisterScheduled = true;
+        mMainHandler.postDelayed(mReregisterNsdServiceRunnable, REREGISTER_NSD_SERVICE_DELAY_MS);
+    }
+
     private void postResolveNsdServiceRunnable() {
         mMainHandler.removeCallbacks(mResolveNsdServiceRunnable);
         mMainHandler.post(mResolveNsdServiceRunnable);
@@ -406,21 +667,56 @@ public final class LssServer {
     @NonNull
     private NsdServiceInfo buildNsdServiceInfo(@NonNull final LssServerInfo serverInfo) {
         final NsdServiceInfo nsdServiceInfo = new NsdServiceInfo();
-        nsdServiceInfo.setServiceName(serverInfo.getId());
+        nsdServiceInfo.setServiceName(mRelaySource == null ? serverInfo.getId() : Preferences.get().getServiceId());
         nsdServiceInfo.setServiceType(Constants.NSD_SERVICE_TYPE);
         nsdServiceInfo.setPort(mGrpcServer.getPort());
         nsdServiceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_ID, serverInfo.getId());
         nsdServiceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_NAME, serverInfo.getName());
+        nsdServiceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_HOP_COUNT,
+            String.valueOf(mRelaySource == null ? 0 : mRelaySource.getHopCount() + 1));
+        nsdServiceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_LOAD, String.valueOf(mLoad));
+        mAdvertisedLoad = mLoad;
+        if (mRelaySource != null) {
+            final List<String> relayChain = new ArrayList<>(mRelaySource.getRelayChain());
+            relayChain.add(Preferences.get().getServiceId());
+            nsdServiceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_RELAY_CHAIN,
+                String.join(Constants.NSD_SERVICE_RELAY_CHAIN_SEPARATOR, relayChain));
+        }
+        mScreenFrameTransports.forEach(transport -> transport.setNsdServiceAttributes(nsdServiceInfo));
         return nsdServiceInfo;
     }
 
-    private static class ScreenStreamService extends ScreenStreamServiceGrpc.ScreenStreamServiceImplBase {
+    @NonNull
+    private static InetAddress getMulticastGroup(@NonNull final String id) throws UnknownHostException {
+        final int hash = id.hashCode();
+        return InetAddress.getByAddress(new byte[]{(byte) 239, (byte) 255, (byte) (hash >> 8), (byte) hash});
+    }
+
+    @Accessors(prefix = "m")
+    static class ScreenStreamService extends ScreenStreamServiceGrpc.ScreenStreamServiceImplBase {
+        private static final io.grpc.Context.Key<InetSocketAddress> REMOTE_ADDRESS_KEY =
+            io.grpc.Context.key("lss-remote-address");
+
         private volatile boolean mIsStopped;
 
-        private volatile ScreenFrame mScreenFrame;
+        @Getter
+        @NonNull
+        private volatile Set<ScreenEncoding> mScreenEncodings = Set.of(ScreenEncoding.getDefaultInstance());
+
+        @Getter
+        private volatile int mMaxFrameRate;
 
+        private volatile int mMaxQuality;
+
+        @NonNull
+        private final Map<ScreenEncoding, ScreenFrame> mScreenFrames = new HashMap<>();
+
+        @Getter
         @NonNull
-        private final Executor mExecutor;
+        private final Map<ScreenEncoding, RateController> mRateControllers = new ConcurrentHashMap<>();
+
+        @NonNull
+        private final ScheduledExecutorService mExecutor;
 
         @NonNull
         private final Object mLock = new Object();
@@ -428,37 +724,95 @@ public final class LssServer {
         @NonNull
         private final List<ScreenStreamResponseObserver> mScreenStreamResponseObservers = new CopyOnWriteArrayList<>();
 
-        private ScreenStreamService(@NonNull final Executor executor) {
+        @NonNull
+        private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+        @NonNull
+        private final ScreenFrameMarshaller mScreenFrameMarshaller = new ScreenFrameMarshaller();
+
+        @NonNull
+        private final Function<InetSocketAddress, ServerProfile.TransportProfile> mTransportProfileProvider;
+
+        private final boolean mIsRelay;
+
+        @VisibleForTesting
+        ScreenStreamService(@NonNull final ScheduledExecutorService executor, final boolean isRelay,
+            final int maxQuality,
+            @NonNull final Function<InetSocketAddress, ServerProfile.TransportProfile> transportProfileProvider) {
             mExecutor = executor;
+            mIsRelay = isRelay;
+            mMaxQuality = maxQuality;
+            mTransportProfileProvider = transportProfileProvider;
+            mRateControllers.put(ScreenEncoding.getDefaultInstance(), new RateController(maxQuality));
         }
 
         @Override
-        public void getScreenStream(Empty request, StreamObserver<ScreenFrame> responseObserver) {
+        public ServerServiceDefinition bindService() {
+            final MethodDescriptor<ScreenStreamRequest, ScreenFrame> method =
+                ScreenStreamServiceGrpc.getGetScreenStreamMethod()
+                    .toBuilder(ProtoLiteUtils.marshaller(ScreenStreamRequest.getDefaultInstance()),
+                        mScreenFrameMarshaller)
+                    .build();
+            return ServerInterceptors.intercept(ServerServiceDefinition.builder(ScreenStreamServiceGrpc.SERVICE_NAME)
+                .addMethod(method, ServerCalls.asyncServerStreamingCall(this::getScreenStream))
+                .addMethod(ScreenStreamServiceGrpc.getAcknowledgeScreenFramesMethod(),
+                    ServerCalls.asyncBidiStreamingCall(this::acknowledgeScreenFrames))
+                .build(), new ServerInterceptor() {
+                @Override
+                public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                    Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                    final InetSocketAddress remoteAddress =
+                        (InetSocketAddress) call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+                    return Contexts.interceptCall(
+                        io.grpc.Context.current().withValue(REMOTE_ADDRESS_KEY, remoteAddress), call, headers, next);
+                }
+            });
+        }
+
+        @Override
+        public void getScreenStream(ScreenStreamRequest request, StreamObserver<ScreenFrame> responseObserver) {
             if (mIsStopped) {
                 return;
             }
 
+            final InetSocketAddress remoteAddress = REMOTE_ADDRESS_KEY.get();
+            final ServerProfile.TransportProfile transportProfile =
+                remoteAddress == null ? null : mTransportProfileProvider.apply(remoteAddress);
             synchronized (mLock) {
                 if (mIsStopped) {
                     return;
                 }
 
                 final ScreenStreamResponseObserver observer = new ScreenStreamResponseObserver(
-                    (ServerCallStreamObserver<ScreenFrame>) responseObserver, mExecutor);
+                    (ServerCallStreamObserver<ScreenFrame>) responseObserver, mExecutor,
+                    mIsRelay ? ScreenEncoding.getDefaultInstance() : normalizeScreenEncoding(request.getEncoding()),
+                    request.getMaxFrameRate(), request.getMaxChunkSize(), transportProfile);
                 observer.setOnReleaseListener(() -> {
                     synchronized (mLock) {
                         mScreenStreamResponseObservers.remove(observer);
+                        updateScreenEncodings();
                     }
                 });
                 mScreenStreamResponseObservers.add(observer);
+                updateScreenEncodings();
 
-                if (mScreenFrame != null) {
-                    observer.postScreenFrame(mScreenFrame);
+                final ScreenFrame screenFrame = mScreenFrames.get(observer.getEncoding());
+                if (screenFrame != null) {
+                    observer.postScreenFrame(screenFrame);
                 }
             }
         }
 
-        public void postScreenFrame(@NonNull final ScreenFrame frame) {
+        @Override
+        public StreamObserver<ScreenFrameAck> acknowledgeScreenFrames(StreamObserver<ClockProbe> responseObserver) {
+            final InetSocketAddress remoteAddress = REMOTE_ADDRESS_KEY.get();
+            final ServerProfile.TransportProfile transportProfile =
+                mIsRelay || remoteAddress == null ? null : mTransportProfileProvider.apply(remoteAddress);
+            return new ScreenFrameAckObserver((ServerCallStreamObserver<ClockProbe>) responseObserver, mExecutor,
+                transportProfile);
+        }
+
+        public void postScreenFrames(@NonNull final Map<ScreenEncoding, ScreenFrame> frames) {
             if (mIsStopped) {
                 return;
             }
@@ -468,38 +822,164 @@ public final class LssServer {
                     return;
                 }
 
-                mScreenFrame = frame;
-                mScreenStreamResponseObservers.forEach(observer -> observer.postScreenFrame(mScreenFrame));
+                frames.forEach((encoding, frame) -> {
+                    final ScreenFrame screenFrame = mScreenFrames.get(encoding);
+                    final ScreenFrame mergedFrame = ScreenFrameUtils.merge(screenFrame, frame);
+                    mBufferPool.retain(mergedFrame);
+                    mBufferPool.release(screenFrame);
+                    mScreenFrames.put(encoding, mergedFrame);
+                });
+                mScreenStreamResponseObservers.forEach(observer -> Optional.ofNullable(
+                    frames.get(observer.getEncoding())).ifPresent(observer::postScreenFrame));
             }
         }
 
+        public void updateRateControllers() {
+            final long timestamp = SystemClock.elapsedRealtimeNanos();
+            mRateControllers.forEach((encoding, rateController) -> {
+                float supersededFrameRatio = 0f;
+                boolean isStalled = false;
+                for (final ScreenStreamResponseObserver observer : mScreenStreamResponseObservers) {
+                    if (!encoding.equals(observer.getEncoding())) {
+                        continue;
+                    }
+
+                    rateController.addOutboundDataSize(observer.getAndResetSentDataSize());
+                    final long postedFrameCount = observer.getAndResetPostedFrameCount();
+                    final long supersededFrameCount = observer.getAndResetSupersededFrameCount();
+                    final long stalledFrameCount = observer.getAndResetStalledFrameCount();
+                    if (postedFrameCount == 0L || stalledFrameCount == 0L) {
+                        continue;
+                    }
+
+                    isStalled = true;
+                    supersededFrameRatio =
+                        Math.max(supersededFrameRatio, (float) supersededFrameCount / postedFrameCount);
+                }
+                rateController.update(supersededFrameRatio, isStalled, timestamp);
+            });
+        }
+
+        public int getEncodeQuality(@NonNull final ScreenEncoding encoding) {
+            return Optional.ofNullable(mRateControllers.get(encoding))
+                .map(RateController::getQuality)
+                .orElse(mMaxQuality);
+        }
+
+        public int getEncodeScale(@NonNull final ScreenEncoding encoding) {
+            return Optional.ofNullable(mRateControllers.get(encoding))
+                .map(RateController::getScale)
+                .orElse(RateController.MAX_SCALE);
+        }
+
+        public void setMaxQuality(final int maxQuality) {
+            mMaxQuality = maxQuality;
+            mRateControllers.values().forEach(rateController -> rateController.setMaxQuality(maxQuality));
+        }
+
         public void stop() {
             synchronized (mLock) {
                 mIsStopped = true;
-                mScreenFrame = null;
+                mScreenFrames.values().forEach(mBufferPool::release);
+                mScreenFrames.clear();
                 mScreenStreamResponseObservers.forEach(ScreenStreamResponseObserver::release);
                 mScreenStreamResponseObservers.clear();
             }
         }
+
+        private void updateScreenEncodings() {
+            final Set<ScreenEncoding> encodings = new HashSet<>();
+            encodings.add(ScreenEncoding.getDefaultInstance());
+            mScreenStreamResponseObservers.forEach(observer -> encodings.add(observer.getEncoding()));
+            mScreenEncodings = Collections.unmodifiableSet(encodings);
+            mRateControllers.keySet().retainAll(encodings);
+            encodings.forEach(encoding -> mRateControllers.computeIfAbsent(encoding,
+                key -> new RateController(mMaxQuality)));
+
+            mMaxFrameRate = mScreenStreamResponseObservers.stream()
+                .mapToInt(ScreenStreamResponseObserver::getMaxFrameRate)
+                .reduce((frameRate, otherFrameRate) -> frameRate <= 0 || otherFrameRate <= 0 ? 0
+                    : Math.max(frameRate, otherFrameRate))
+                .orElse(0);
+
+            mScreenFrames.entrySet().removeIf(entry -> {
+                if (encodings.contains(entry.getKey())) {
+                    return false;
+                }
+                mBufferPool.release(entry.getValue());
+                return true;
+            });
+        }
+
+        @NonNull
+        private static ScreenEncoding normalizeScreenEncoding(@NonNull final ScreenEncoding encoding) {
+            return ScreenEncoding.newBuilder()
+                .setMaxWidth(Math.max(0, encoding.getMaxWidth()))
+                .setMaxHeight(Math.max(0, encoding.getMaxHeight()))
+                .setQuality(Math.min(100, Math.max(0, encoding.getQuality())))
+                .build();
+        }
     }
 
     @Accessors(prefix = "m")
-    private static class ScreenStreamResponseObserver {
+    static class ScreenStreamResponseObserver {
+        private static final int MIN_CHUNK_SIZE = 16 * 1024;
+
         private volatile boolean mIsReleased;
 
         private volatile ScreenFrame mScreenFrame;
 
+        @Nullable
+        private ScreenFrame mChunkedFrame;
+
+        private int mChunkOffset;
+
         private volatile long mScreenFrameTimestamp = -1L;
 
+        private boolean mIsDrainScheduled;
+
+        private long mSendTimestamp;
+
+        private long mStallTimestamp = -1L;
+
         @Setter
         @Nullable
         private OnReleaseListener mOnReleaseListener;
 
+        @Nullable
+        private final ServerProfile.TransportProfile mTransportProfile;
+
         @NonNull
         private final ServerCallStreamObserver<ScreenFrame> mObserver;
 
         @NonNull
-        private final Executor mExecutor;
+        private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+        @NonNull
+        private final AtomicLong mPostedFrameCount = new AtomicLong();
+
+        @NonNull
+        private final AtomicLong mSupersededFrameCount = new AtomicLong();
+
+        @NonNull
+        private final AtomicLong mStalledFrameCount = new AtomicLong();
+
+        @NonNull
+        private final AtomicLong mSentDataSize = new AtomicLong();
+
+        @NonNull
+        private final ScheduledExecutorService mExecutor;
+
+        @Getter
+        @NonNull
+        private final ScreenEncoding mEncoding;
+
+        @Getter
+        private final int mMaxFrameRate;
+
+        private final long mFrameInterval;
+
+        private final int mMaxChunkSize;
 
         @NonNull
         private final Object mLock = new Object();
@@ -508,32 +988,35 @@ public final class LssServer {
         private final Runnable mOnReadyHandler = new Runnable() {
             @Override
             public void run() {
-                if (mIsReleased || mScreenFrame == null) {
+                if (mIsReleased) {
                     return;
                 }
 
                 synchronized (mLock) {
-                    if (mIsReleased || mScreenFrame == null) {
-                        return;
-                    }
-
-                    if (mScreenFrameTimestamp < mScreenFrame.getTimestamp()) {
-                        mScreenFrameTimestamp = mScreenFrame.getTimestamp();
-                        mObserver.onNext(mScreenFrame);
-                    }
-
-                    mScreenFrame = null;
+                    endStall();
+                    scheduleDrain();
                 }
             }
         };
 
-        private ScreenStreamResponseObserver(@NonNull final ServerCallStreamObserver<ScreenFrame> observer,
-            @NonNull final Executor executor) {
+        @VisibleForTesting
+        ScreenStreamResponseObserver(@NonNull final ServerCallStreamObserver<ScreenFrame> observer,
+            @NonNull final ScheduledExecutorService executor, @NonNull final ScreenEncoding encoding,
+            final int maxFrameRate, final int maxChunkSize,
+            @Nullable final ServerProfile.TransportProfile transportProfile) {
             mObserver = observer;
             mExecutor = executor;
+            mEncoding = encoding;
+            mTransportProfile = transportProfile;
+            mMaxFrameRate = Math.max(0, maxFrameRate);
+            mFrameInterval = mMaxFrameRate == 0 ? 0L : Duration.ofSeconds(1L).toNanos() / mMaxFrameRate;
+            mMaxChunkSize = maxChunkSize <= 0 ? 0 : Math.max(MIN_CHUNK_SIZE, maxChunkSize);
             mObserver.setOnReadyHandler(mOnReadyHandler);
             mObserver.setOnCloseHandler(this::release);
             mObserver.setOnCancelHandler(this::release);
+            if (mTransportProfile != null) {
+                mTransportProfile.getFlowController().setOnWindowOpenedListener(mOnReadyHandler);
+            }
         }
 
         public void postScreenFrame(@NonNull final ScreenFrame frame) {
@@ -546,9 +1029,24 @@ public final class LssServer {
                     return;
                 }
 
-                mScreenFrame = frame;
+                final ScreenFrame screenFrame = mScreenFrame;
+                mScreenFrame = ScreenFrameUtils.merge(screenFrame, frame);
+                mBufferPool.retain(mScreenFrame);
+                mBufferPool.release(screenFrame);
+
+                mPostedFrameCount.incrementAndGet();
+                if (screenFrame != null) {
+                    mSupersededFrameCount.incrementAndGet();
+                    if (mTransportProfile != null) {
+                        mTransportProfile.addDroppedFrame();
+                    }
+                }
+
                 if (mObserver.isReady()) {
-                    mExecutor.execute(mOnReadyHandler);
+                    scheduleDrain();
+                } else {
+                    mStalledFrameCount.incrementAndGet();
+                    beginStall();
                 }
             }
         }
@@ -556,105 +1054,579 @@ public final class LssServer {
         public void release() {
             synchronized (mLock) {
                 mIsReleased = true;
+                mBufferPool.release(mScreenFrame);
                 mScreenFrame = null;
+                if (!mIsDrainScheduled) {
+                    mBufferPool.release(mChunkedFrame);
+                    mChunkedFrame = null;
+                }
+                endStall();
+                if (mTransportProfile != null) {
+                    mTransportProfile.getFlowController().setOnWindowOpenedListener(null);
+                }
                 if (mOnReleaseListener != null) {
                     mOnReleaseListener.onRelease();
                 }
             }
         }
 
+        private void scheduleDrain() {
+            if (mIsReleased || mIsDrainScheduled || mScreenFrame == null) {
+                return;
+            }
+
+            mIsDrainScheduled = true;
+            try {
+                mExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                mIsDrainScheduled = false;
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                final ScreenFrame frame;
+                final boolean isChunked;
+                synchronized (mLock) {
+                    if (mChunkedFrame != null && mScreenFrame != null && ScreenFrameUtils.isKeyFrame(mScreenFrame)) {
+                        mBufferPool.release(mChunkedFrame);
+                        mChunkedFrame = null;
+                        if (mTransportProfile != null) {
+                            mTransportProfile.addDroppedFrame();
+                        }
+                    }
+
+                    isChunked = mChunkedFrame != null;
+                    frame = isChunked ? mChunkedFrame : mScreenFrame;
+                    final boolean isReady = mObserver.isReady();
+                    if (mIsReleased || frame == null || !isReady || !isChunked && !isFlowControlWindowOpen()) {
+                        if (mIsReleased) {
+                            mBufferPool.release(mChunkedFrame);
+                            mChunkedFrame = null;
+                        } else if (frame != null && !isReady) {
+                            beginStall();
+                        }
+                        mIsDrainScheduled = false;
+                        return;
+                    }
+
+                    if (!isChunked) {
+                        final long delay = mSendTimestamp + mFrameInterval - SystemClock.elapsedRealtimeNanos();
+                        if (delay > 0L) {
+                            try {
+                                mExecutor.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+                            } catch (RejectedExecutionException e) {
+                                mBufferPool.release(mScreenFrame);
+                                mScreenFrame = null;
+                                mBufferPool.release(mChunkedFrame);
+                                mChunkedFrame = null;
+                                mIsDrainScheduled = false;
+                            }
+                            return;
+                        }
+                        mScreenFrame = null;
+                    }
+                }
+
+                if (isChunked) {
+                    if (!sendScreenFrameChunk(frame)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                if (mScreenFrameTimestamp < frame.getTimestamp()) {
+                    mScreenFrameTimestamp = frame.getTimestamp();
+                    mSendTimestamp = SystemClock.elapsedRealtimeNanos();
+                    if (mTransportProfile != null) {
+                        mTransportProfile.getFlowController().onFrameSent(frame.getTimestamp(),
+                            frame.getSerializedSize());
+                    }
+
+                    if (mMaxChunkSize > 0 && frame.getData().size() > mMaxChunkSize) {
+                        synchronized (mLock) {
+                            mChunkedFrame = frame;
+                            mChunkOffset = 0;
+                        }
+                        continue;
+                    }
+
+                    try {
+                        mObserver.onNext(frame);
+                    } catch (RuntimeException e) {
+                        mBufferPool.release(frame);
+                        release();
+                        return;
+                    }
+
+                    mSentDataSize.addAndGet(frame.getSerializedSize());
+
+                    if (mTransportProfile != null) {
+                        mTransportProfile.addSentFrame();
+                    }
+                } else if (mTransportProfile != null) {
+                    mTransportProfile.addDroppedFrame();
+                }
+
+                mBufferPool.release(frame);
+            }
+        }
+
+        private boolean sendScreenFrameChunk(@NonNull final ScreenFrame frame) {
+            final int dataSize = frame.getData().size();
+            final int chunkSize = Math.min(mMaxChunkSize, dataSize - mChunkOffset);
+            final ScreenFrame.Builder chunkBuilder = mChunkOffset == 0 ? frame.toBuilder()
+                : ScreenFrame.newBuilder().setTimestamp(frame.getTimestamp());
+            try {
+                final ScreenFrame chunk = chunkBuilder.setData(frame.getData().substring(mChunkOffset,
+                        mChunkOffset + chunkSize))
+                    .setDataSize(dataSize)
+                    .setDataOffset(mChunkOffset)
+                    .build();
+                mObserver.onNext(chunk);
+                mSentDataSize.addAndGet(chunk.getSerializedSize());
+            } catch (RuntimeException e) {
+                synchronized (mLock) {
+                    mBufferPool.release(mChunkedFrame);
+                    mChunkedFrame = null;
+                }
+                release();
+                return false;
+            }
+
+            mChunkOffset += chunkSize;
+            if (mChunkOffset < dataSize) {
+                return true;
+            }
+
+            synchronized (mLock) {
+                mBufferPool.release(mChunkedFrame);
+                mChunkedFrame = null;
+            }
+            if (mTransportProfile != null) {
+                mTransportProfile.addSentFrame();
+            }
+            return true;
+        }
+
+        private boolean isFlowControlWindowOpen() {
+            return mTransportProfile == null || mTransportProfile.getFlowController().isWindowOpen();
+        }
+
+        private void beginStall() {
+            if (mStallTimestamp < 0L) {
+                mStallTimestamp = SystemClock.elapsedRealtimeNanos();
+            }
+        }
+
+        private void endStall() {
+            if (mStallTimestamp < 0L) {
+                return;
+            }
+
+            if (mTransportProfile != null) {
+                mTransportProfile.addStallTime(SystemClock.elapsedRealtimeNanos() - mStallTimestamp);
+            }
+            mStallTimestamp = -1L;
+        }
+
+        public long getAndResetPostedFrameCount() {
+            return mPostedFrameCount.getAndSet(0L);
+        }
+
+        public long getAndResetSupersededFrameCount() {
+            return mSupersededFrameCount.getAndSet(0L);
+        }
+
+        public long getAndResetStalledFrameCount() {
+            return mStalledFrameCount.getAndSet(0L);
+        }
+
+        public long getAndResetSentDataSize() {
+            return mSentDataSize.getAndSet(0L);
+        }
+
         @FunctionalInterface
         private interface OnReleaseListener {
             void onRelease();
         }
     }
 
-    @Accessors(prefix = "m")
-    private static class ServerProfile {
+    private static class ScreenFrameAckObserver implements StreamObserver<ScreenFrameAck> {
+        private static final long CLOCK_PROBE_INTERVAL_NS = Duration.ofSeconds(1L).toNanos();
+
+        private static final int MAX_CLOCK_SAMPLES = 8;
+
+        @Nullable
+        private volatile ScheduledFuture<?> mClockProbeFuture;
+
+        private int mClockSampleIndex;
+
+        private int mClockSampleCount;
+
         @NonNull
-        private final Object mLock = new Object();
+        private final long[] mClockOffsets = new long[MAX_CLOCK_SAMPLES];
 
         @NonNull
-        private final AtomicLong mCollectionTimestamp = new AtomicLong(SystemClock.elapsedRealtimeNanos());
+        private final long[] mRoundTripTimes = new long[MAX_CLOCK_SAMPLES];
 
         @NonNull
-        private final List<TransportProfile> mTransports = new CopyOnWriteArrayList<>();
+        private final ServerCallStreamObserver<ClockProbe> mObserver;
 
-        public void addTransport(@NonNull final InetSocketAddress remoteAddress) {
-            synchronized (mLock) {
-                if (getTransport(remoteAddress) == null) {
-                    mTransports.add(new TransportProfile(remoteAddress));
+        @Nullable
+        private final ServerProfile.TransportProfile mTransportProfile;
+
+        private ScreenFrameAckObserver(@NonNull final ServerCallStreamObserver<ClockProbe> observer,
+            @NonNull final ScheduledExecutorService executor,
+            @Nullable final ServerProfile.TransportProfile transportProfile) {
+            mObserver = observer;
+            mTransportProfile = transportProfile;
+            mObserver.setOnCancelHandler(this::close);
+            if (mTransportProfile != null) {
+                try {
+                    mClockProbeFuture = executor.scheduleWithFixedDelay(this::sendClockProbe, 0L,
+                        CLOCK_PROBE_INTERVAL_NS, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // ignored
                 }
             }
         }
 
-        public void removeTransport(@NonNull final InetSocketAddress remoteAddress) {
-            synchronized (mLock) {
-                final TransportProfile transportProfile = getTransport(remoteAddress);
-                if (transportProfile != null) {
-                    mTransports.remove(transportProfile);
+        @Override
+        public void onNext(ScreenFrameAck value) {
+            if (mTransportProfile == null) {
+                return;
+            }
+
+            if (value.getType() == ScreenFrameAck.Type.TYPE_DECODED) {
+                mTransportProfile.getFlowController().onFrameAcked(value.getFrameTimestamp());
+            }
+
+            switch (value.getType()) {
+                case TYPE_CLOCK:
+                    addClockSample(value, System.nanoTime());
+                    break;
+                case TYPE_DECODED:
+                case TYPE_DISPLAYED:
+                    if (mClockSampleCount == 0) {
+                        break;
+                    }
+
+                    final long latency = value.getTimestamp() - getClockOffset() - value.getFrameTimestamp();
+                    if (latency >= 0L) {
+                        if (value.getType() == ScreenFrameAck.Type.TYPE_DECODED) {
+                            mTransportProfile.addDecodeLatency(latency);
+                        } else {
+                            mTransportProfile.addDisplayLatency(latency);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onCompleted() {
+            close();
+            synchronized (mObserver) {
+                try {
+                    mObserver.onCompleted();
+                } catch (RuntimeException e) {
+                    // ignored
                 }
             }
         }
 
+        private void sendClockProbe() {
+            synchronized (mObserver) {
+                if (!mObserver.isReady()) {
+                    return;
+                }
+
+                try {
+                    mObserver.onNext(ClockProbe.newBuilder().setTimestamp(System.nanoTime()).build());
+                } catch (RuntimeException e) {
+                    cancelClockProbe();
+                }
+            }
+        }
+
+        private void cancelClockProbe() {
+            Optional.ofNullable(mClockProbeFuture).ifPresent(future -> future.cancel(false));
+        }
+
+        private void close() {
+            cancelClockProbe();
+            if (mTransportProfile != null) {
+                mTransportProfile.getFlowController().disable();
+            }
+        }
+
+        @SuppressWarnings("DataFlowIssue")
+        private void addClockSample(@NonNull final ScreenFrameAck ack, final long receiveTimestamp) {
+            final long roundTripTime = receiveTimestamp - ack.getProbeTimestamp()
+                - (ack.getTimestamp() - ack.getProbeReceiveTimestamp());
+            if (roundTripTime < 0L) {
+                return;
+            }
+
+            mClockOffsets[mClockSampleIndex] = (ack.getProbeReceiveTimestamp() - ack.getProbeTimestamp()
+                + ack.getTimestamp() - receiveTimestamp) / 2L;
+            mRoundTripTimes[mClockSampleIndex] = roundTripTime;
+            mClockSampleIndex = (mClockSampleIndex + 1) % MAX_CLOCK_SAMPLES;
+            mClockSampleCount = Math.min(mClockSampleCount + 1, MAX_CLOCK_SAMPLES);
+            mTransportProfile.setRoundTripTime(roundTripTime);
+        }
+
+        private long getClockOffset() {
+            int index = 0;
+            for (int i = 1; i < mClockSampleCount; i++) {
+                if (mRoundTripTimes[i] < mRoundTripTimes[index]) {
+                    index = i;
+                }
+            }
+            return mClockOffsets[index];
+        }
+    }
+
+    @Accessors(prefix = "m")
+    static class ServerProfile {
+        private static final double[] LATENCY_BUCKETS =
+            {0.01d, 0.02d, 0.05d, 0.1d, 0.2d, 0.5d, 1d, 2d, 5d};
+
+        private long mCollectedSuppressedFrameCount;
+
+        @NonNull
+        private final AtomicLong mCollectionTimestamp = new AtomicLong(SystemClock.elapsedRealtimeNanos());
+
+        @NonNull
+        private final LongAdder mSuppressedFrameCount = new LongAdder();
+
+        @NonNull
+        private final Map<InetSocketAddress, TransportProfile> mTransports = new ConcurrentHashMap<>();
+
+        public void addSuppressedFrame() {
+            mSuppressedFrameCount.increment();
+        }
+
+        public void addTransport(@NonNull final InetSocketAddress remoteAddress) {
+            mTransports.computeIfAbsent(remoteAddress, TransportProfile::new);
+        }
+
+        public void removeTransport(@NonNull final InetSocketAddress remoteAddress) {
+            mTransports.remove(remoteAddress);
+        }
+
         @Nullable
         public TransportProfile getTransport(@NonNull final InetSocketAddress remoteAddress) {
-            return mTransports.stream()
-                .filter(transportProfile -> Objects.equals(transportProfile.getRemoteAddress(), remoteAddress))
-                .findFirst()
-                .orElse(null);
+            return mTransports.get(remoteAddress);
+        }
+
+        public void writeMetrics(@NonNull final MetricsWriter writer) {
+            writer.counter("lss_server_suppressed_frames_total", "Captured frames skipped because nothing changed.",
+                    mSuppressedFrameCount.sum())
+                .gauge("lss_server_transports", "Connected viewer transports.", mTransports.size());
+            final List<TransportProfile> transports = List.copyOf(mTransports.values());
+            transports.forEach(transport -> writer.counter("lss_transport_outbound_bytes_total",
+                "Bytes sent to a viewer.", transport.mOutboundDataSize.sum(),
+                "remote", transport.mRemoteAddress.toString()));
+            transports.forEach(transport -> writer.counter("lss_transport_sent_frames_total",
+                "Frames delivered to a viewer.", transport.mSentFrameCount.sum(),
+                "remote", transport.mRemoteAddress.toString()));
+            transports.forEach(transport -> writer.counter("lss_transport_dropped_frames_total",
+                "Frames superseded before they were sent to a viewer.", transport.mDroppedFrameCount.sum(),
+                "remote", transport.mRemoteAddress.toString()));
+            transports.forEach(transport -> writer.counter("lss_transport_stall_seconds_total",
+                "Time a viewer transport was not ready to accept data.", transport.mStallTime.sum() / 1e9d,
+                "remote", transport.mRemoteAddress.toString()));
+            transports.forEach(transport -> writer.gauge("lss_transport_flow_control_window_bytes",
+                "Flow-control window sized from a viewer's bandwidth-delay product.",
+                transport.mFlowController.getWindowSize(), "remote", transport.mRemoteAddress.toString()));
+            transports.forEach(transport -> writer.histogram("lss_transport_display_latency_seconds",
+                "Capture-to-display latency reported by a viewer.", transport.mDisplayLatencyHistogram,
+                "remote", transport.mRemoteAddress.toString()));
         }
 
         @NonNull
-        public LssServerStats collect() {
-            synchronized (mLock) {
-                final long startTimestamp = mCollectionTimestamp.getAndSet(SystemClock.elapsedRealtimeNanos());
-                final long endTimestamp = mCollectionTimestamp.get();
-                final List<LssServerStats.TransportStats> transports = mTransports.stream()
-                    .map(transportProfile -> {
-                        final long outboundDataSize = transportProfile.getAndResetOutboundDataSize();
-                        final long outboundDataRate = Math.round((double) outboundDataSize
-                            / (endTimestamp - startTimestamp) * Duration.ofSeconds(1L).toNanos());
-                        return LssServerStats.TransportStats.builder()
-                            .remoteAddress(transportProfile.getRemoteAddress().toString())
-                            .outboundDataSize(outboundDataSize)
-                            .outboundDataRate(outboundDataRate)
-                            .build();
-                    })
-                    .collect(Collectors.toUnmodifiableList());
-                final long outboundDataSize = transports.stream()
-                    .map(LssServerStats.TransportStats::getOutboundDataSize)
-                    .reduce(0L, Long::sum);
-                final long outboundDataRate = Math.round((double) outboundDataSize / (endTimestamp - startTimestamp)
-                    * Duration.ofSeconds(1L).toNanos());
-
-                return LssServerStats.builder()
-                    .outboundDataSize(outboundDataSize)
-                    .outboundDataRate(outboundDataRate)
-                    .transports(transports)
-                    .build();
-            }
+        public LssServerStats collect(@NonNull final List<LssServerStats.PipelineStageStats> pipelineStages,
+            final float frameRate, final int encodeQuality, final int encodeScale) {
+            final long endTimestamp = SystemClock.elapsedRealtimeNanos();
+            final long startTimestamp = mCollectionTimestamp.getAndSet(endTimestamp);
+            final long interval = Math.max(1L, endTimestamp - startTimestamp);
+            final List<LssServerStats.TransportStats> transports = mTransports.values()
+                .stream()
+                .map(transportProfile -> transportProfile.collect(interval))
+                .sorted()
+                .collect(Collectors.toUnmodifiableList());
+            final long outboundDataSize = transports.stream()
+                .mapToLong(LssServerStats.TransportStats::getOutboundDataSize)
+                .sum();
+            final long outboundDataRate =
+                Math.round((double) outboundDataSize / interval * Duration.ofSeconds(1L).toNanos());
+
+            final long suppressedFrameCount = mSuppressedFrameCount.sum();
+            final long collectedSuppressedFrameCount = mCollectedSuppressedFrameCount;
+            mCollectedSuppressedFrameCount = suppressedFrameCount;
+
+            return LssServerStats.builder()
+                .outboundDataSize(outboundDataSize)
+                .outboundDataRate(outboundDataRate)
+                .frameRate(frameRate)
+                .suppressedFrameCount(suppressedFrameCount - collectedSuppressedFrameCount)
+                .encodeQuality(encodeQuality)
+                .encodeScale(encodeScale)
+                .pipelineStages(pipelineStages)
+                .transports(transports)
+                .build();
         }
 
         @Accessors(prefix = "m")
-        private static class TransportProfile {
-            @Getter(AccessLevel.PRIVATE)
+        static class TransportProfile {
             @NonNull
             private final InetSocketAddress mRemoteAddress;
 
             @NonNull
-            private final AtomicLong mOutboundDataSize = new AtomicLong();
+            private final LongAdder mOutboundDataSize = new LongAdder();
+
+            @NonNull
+            private final LongAdder mSentFrameCount = new LongAdder();
+
+            @NonNull
+            private final LongAdder mDroppedFrameCount = new LongAdder();
+
+            @NonNull
+            private final LongAdder mStallTime = new LongAdder();
+
+            @NonNull
+            private final LatencyRecorder mDecodeLatency = new LatencyRecorder();
+
+            @NonNull
+            private final LatencyRecorder mDisplayLatency = new LatencyRecorder();
+
+            @NonNull
+            private final Histogram mDisplayLatencyHistogram = new Histogram(LATENCY_BUCKETS);
+
+            @Getter
+            @NonNull
+            private final ScreenFrameFlowController mFlowController =
+                new ScreenFrameFlowController(Preferences.get().getProjectionFlowControlMode());
+
+            private volatile long mRoundTripTime;
+
+            private long mCollectedOutboundDataSize;
+
+            private long mCollectedSentFrameCount;
+
+            private long mCollectedDroppedFrameCount;
+
+            private long mCollectedStallTime;
 
             private TransportProfile(@NonNull final InetSocketAddress remoteAddress) {
                 mRemoteAddress = remoteAddress;
             }
 
             public void addOutboundDataSize(final long size) {
-                mOutboundDataSize.addAndGet(size);
+                mOutboundDataSize.add(size);
+            }
+
+            public void addSentFrame() {
+                mSentFrameCount.increment();
+            }
+
+            public void addDroppedFrame() {
+                mDroppedFrameCount.increment();
+            }
+
+            public void addStallTime(final long time) {
+                mStallTime.add(time);
+            }
+
+            public void addDecodeLatency(final long latency) {
+                mDecodeLatency.record(latency);
+            }
+
+            public void addDisplayLatency(final long latency) {
+                mDisplayLatency.record(latency);
+                mDisplayLatencyHistogram.record(latency / 1e9d);
+            }
+
+            public void setRoundTripTime(final long roundTripTime) {
+                mRoundTripTime = roundTripTime;
             }
 
-            public long getAndResetOutboundDataSize() {
-                return mOutboundDataSize.getAndSet(0L);
+            @NonNull
+            private LssServerStats.TransportStats collect(final long interval) {
+                final long totalOutboundDataSize = mOutboundDataSize.sum();
+                final long outboundDataSize = totalOutboundDataSize - mCollectedOutboundDataSize;
+                mCollectedOutboundDataSize = totalOutboundDataSize;
+                final long totalSentFrameCount = mSentFrameCount.sum();
+                final long sentFrameCount = totalSentFrameCount - mCollectedSentFrameCount;
+                mCollectedSentFrameCount = totalSentFrameCount;
+                final long totalDroppedFrameCount = mDroppedFrameCount.sum();
+                final long droppedFrameCount = totalDroppedFrameCount - mCollectedDroppedFrameCount;
+                mCollectedDroppedFrameCount = totalDroppedFrameCount;
+                final long totalStallTime = mStallTime.sum();
+                final long stallTime = totalStallTime - mCollectedStallTime;
+                mCollectedStallTime = totalStallTime;
+                final float frameRate = (float) ((double) sentFrameCount / interval * Duration.ofSeconds(1L).toNanos());
+                final long[] displayLatencies = mDisplayLatency.drain();
+                return LssServerStats.TransportStats.builder()
+                    .remoteAddress(mRemoteAddress.toString())
+                    .outboundDataSize(outboundDataSize)
+                    .outboundDataRate(Math.round((double) outboundDataSize / interval
+                        * Duration.ofSeconds(1L).toNanos()))
+                    .sentFrameCount(sentFrameCount)
+                    .droppedFrameCount(droppedFrameCount)
+                    .stallTime(stallTime)
+                    .frameRate(frameRate)
+                    .decodeLatency(LatencyRecorder.getPercentile(mDecodeLatency.drain(), 0.5d))
+                    .latencyP50(LatencyRecorder.getPercentile(displayLatencies, 0.5d))
+                    .latencyP95(LatencyRecorder.getPercentile(displayLatencies, 0.95d))
+                    .latencyP99(LatencyRecorder.getPercentile(displayLatencies, 0.99d))
+                    .roundTripTime(mRoundTripTime)
+                    .flowControlWindow(mFlowController.getWindowSize())
+                    .build();
+            }
+        }
+
+        private static class LatencyRecorder {
+            private static final int MAX_SAMPLES = 1024;
+
+            private int mSampleIndex;
+
+            private int mSampleCount;
+
+            @NonNull
+            private final long[] mSamples = new long[MAX_SAMPLES];
+
+            public synchronized void record(final long latency) {
+                mSamples[mSampleIndex] = latency;
+                mSampleIndex = (mSampleIndex + 1) % MAX_SAMPLES;
+                mSampleCount = Math.min(mSampleCount + 1, MAX_SAMPLES);
+            }
+
+            @NonNull
+            public synchronized long[] drain() {
+                final long[] samples = Arrays.copyOf(mSamples, mSampleCount);
+                mSampleIndex = 0;
+                mSampleCount = 0;
+                Arrays.sort(samples);
+                return samples;
+            }
+
+            public static long getPercentile(@NonNull final long[] sortedSamples, final double percentile) {
+                if (sortedSamples.length == 0) {
+                    return 0L;
+                }
+
+                final int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+                return sortedSamples[Math.max(0, Math.min(sortedSamples.length - 1, index))];
             }
         }
     }
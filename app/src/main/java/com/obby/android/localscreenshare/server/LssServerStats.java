@@ -35,6 +35,17 @@ public class LssServerStats implements Parcelable {
 
     private final long mOutboundDataRate;
 
+    private final float mFrameRate;
+
+    private final long mSuppressedFrameCount;
+
+    private final int mEncodeQuality;
+
+    private final int mEncodeScale;
+
+    @NonNull
+    private final List<PipelineStageStats> mPipelineStages;
+
     @NonNull
     private final List<TransportStats> mTransports;
 
@@ -42,6 +53,11 @@ public class LssServerStats implements Parcelable {
     private LssServerStats(@NonNull final Parcel in) {
         mOutboundDataSize = in.readLong();
         mOutboundDataRate = in.readLong();
+        mFrameRate = in.readFloat();
+        mSuppressedFrameCount = in.readLong();
+        mEncodeQuality = in.readInt();
+        mEncodeScale = in.readInt();
+        mPipelineStages = in.createTypedArrayList(PipelineStageStats.CREATOR);
         mTransports = in.createTypedArrayList(TransportStats.CREATOR);
     }
 
@@ -54,6 +70,11 @@ public class LssServerStats implements Parcelable {
     public void writeToParcel(@NonNull Parcel dest, int flags) {
         dest.writeLong(mOutboundDataSize);
         dest.writeLong(mOutboundDataRate);
+        dest.writeFloat(mFrameRate);
+        dest.writeLong(mSuppressedFrameCount);
+        dest.writeInt(mEncodeQuality);
+        dest.writeInt(mEncodeScale);
+        dest.writeTypedList(mPipelineStages);
         dest.writeTypedList(mTransports);
     }
 
@@ -85,11 +106,41 @@ public class LssServerStats implements Parcelable {
 
         private final long mOutboundDataRate;
 
+        private final long mSentFrameCount;
+
+        private final long mDroppedFrameCount;
+
+        private final long mStallTime;
+
+        private final float mFrameRate;
+
+        private final long mDecodeLatency;
+
+        private final long mLatencyP50;
+
+        private final long mLatencyP95;
+
+        private final long mLatencyP99;
+
+        private final long mRoundTripTime;
+
+        private final int mFlowControlWindow;
+
         @SuppressWarnings("DataFlowIssue")
         private TransportStats(@NonNull final Parcel in) {
             mRemoteAddress = in.readString();
             mOutboundDataSize = in.readLong();
             mOutboundDataRate = in.readLong();
+            mSentFrameCount = in.readLong();
+            mDroppedFrameCount = in.readLong();
+            mStallTime = in.readLong();
+            mFrameRate = in.readFloat();
+            mDecodeLatency = in.readLong();
+            mLatencyP50 = in.readLong();
+            mLatencyP95 = in.readLong();
+            mLatencyP99 = in.readLong();
+            mRoundTripTime = in.readLong();
+            mFlowControlWindow = in.readInt();
         }
 
         @Override
@@ -107,6 +158,72 @@ public class LssServerStats implements Parcelable {
             dest.writeString(mRemoteAddress);
             dest.writeLong(mOutboundDataSize);
             dest.writeLong(mOutboundDataRate);
+            dest.writeLong(mSentFrameCount);
+            dest.writeLong(mDroppedFrameCount);
+            dest.writeLong(mStallTime);
+            dest.writeFloat(mFrameRate);
+            dest.writeLong(mDecodeLatency);
+            dest.writeLong(mLatencyP50);
+            dest.writeLong(mLatencyP95);
+            dest.writeLong(mLatencyP99);
+            dest.writeLong(mRoundTripTime);
+            dest.writeInt(mFlowControlWindow);
+        }
+    }
+
+    @Accessors(prefix = "m")
+    @Data
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @lombok.Builder(builderClassName = "Builder", toBuilder = true)
+    public static class PipelineStageStats implements Parcelable {
+        public static final Creator<PipelineStageStats> CREATOR = new Creator<>() {
+            @Override
+            public PipelineStageStats createFromParcel(Parcel in) {
+                return new PipelineStageStats(in);
+            }
+
+            @Override
+            public PipelineStageStats[] newArray(int size) {
+                return new PipelineStageStats[size];
+            }
+        };
+
+        @NonNull
+        private final String mName;
+
+        private final int mQueueDepth;
+
+        private final int mMaxQueueDepth;
+
+        private final long mProcessedFrameCount;
+
+        private final long mSupersededFrameCount;
+
+        private final long mAverageProcessingTime;
+
+        @SuppressWarnings("DataFlowIssue")
+        private PipelineStageStats(@NonNull final Parcel in) {
+            mName = in.readString();
+            mQueueDepth = in.readInt();
+            mMaxQueueDepth = in.readInt();
+            mProcessedFrameCount = in.readLong();
+            mSupersededFrameCount = in.readLong();
+            mAverageProcessingTime = in.readLong();
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(@NonNull Parcel dest, int flags) {
+            dest.writeString(mName);
+            dest.writeInt(mQueueDepth);
+            dest.writeInt(mMaxQueueDepth);
+            dest.writeLong(mProcessedFrameCount);
+            dest.writeLong(mSupersededFrameCount);
+            dest.writeLong(mAverageProcessingTime);
         }
     }
 }
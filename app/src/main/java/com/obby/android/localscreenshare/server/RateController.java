@@ -0,0 +1,117 @@
+package com.obby.android.localscreenshare.server;
+
+import androidx.annotation.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+@Accessors(prefix = "m")
+final class RateController {
+    private static final int MIN_QUALITY = 30;
+
+    private static final int QUALITY_STEP = 5;
+
+    private static final float QUALITY_DECREASE_FACTOR = 0.8f;
+
+    static final int MAX_SCALE = 100;
+
+    private static final int MIN_SCALE = 50;
+
+    private static final int SCALE_STEP = 10;
+
+    private static final int SCALE_DOWN_CONGESTED_UPDATES = 3;
+
+    private static final int SCALE_UP_CLEAR_UPDATES = 5;
+
+    private static final long MIN_SCALE_DWELL_NS = Duration.ofSeconds(10L).toNanos();
+
+    private static final float MAX_SUPERSEDED_FRAME_RATIO = 0.1f;
+
+    private static final float PROBE_HEADROOM = 1.15f;
+
+    private static final float CAPACITY_PROBE_FACTOR = 1.05f;
+
+    @Getter
+    private volatile int mQuality;
+
+    @Getter
+    private volatile int mScale = MAX_SCALE;
+
+    private int mMaxQuality;
+
+    private int mCongestedUpdateCount;
+
+    private int mClearUpdateCount;
+
+    private long mScaleTimestamp;
+
+    private long mCapacity;
+
+    private long mUpdateTimestamp;
+
+    @NonNull
+    private final AtomicLong mOutboundDataSize = new AtomicLong();
+
+    RateController(final int maxQuality) {
+        mMaxQuality = maxQuality;
+        mQuality = maxQuality;
+    }
+
+    public synchronized void setMaxQuality(final int maxQuality) {
+        mMaxQuality = maxQuality;
+        mQuality = Math.min(Math.max(mQuality, Math.min(MIN_QUALITY, maxQuality)), maxQuality);
+    }
+
+    public void addOutboundDataSize(final long size) {
+        mOutboundDataSize.addAndGet(size);
+    }
+
+    public synchronized void update(final float supersededFrameRatio, final boolean isStalled,
+        final long timestamp) {
+        final long startTimestamp = mUpdateTimestamp;
+        mUpdateTimestamp = timestamp;
+        final long outboundDataSize = mOutboundDataSize.getAndSet(0L);
+        if (startTimestamp == 0L || timestamp <= startTimestamp) {
+            return;
+        }
+
+        final long outboundDataRate = Math.round((double) outboundDataSize / (timestamp - startTimestamp)
+            * Duration.ofSeconds(1L).toNanos());
+
+        if (isStalled && supersededFrameRatio > MAX_SUPERSEDED_FRAME_RATIO) {
+            mCapacity = outboundDataRate;
+            mClearUpdateCount = 0;
+            if (mQuality > MIN_QUALITY) {
+                mQuality = Math.max(Math.min(MIN_QUALITY, mMaxQuality), (int) (mQuality * QUALITY_DECREASE_FACTOR));
+                mCongestedUpdateCount = 0;
+            } else if (++mCongestedUpdateCount >= SCALE_DOWN_CONGESTED_UPDATES && mScale > MIN_SCALE
+                && isScaleDwellElapsed(timestamp)) {
+                mScale = Math.max(MIN_SCALE, mScale - SCALE_STEP);
+                mScaleTimestamp = timestamp;
+                mCongestedUpdateCount = 0;
+            }
+            return;
+        }
+
+        mCongestedUpdateCount = 0;
+        if (mCapacity > 0L && outboundDataRate * PROBE_HEADROOM >= mCapacity) {
+            mCapacity = (long) (mCapacity * CAPACITY_PROBE_FACTOR);
+            return;
+        }
+
+        if (mScale >= MAX_SCALE) {
+            mQuality = Math.min(mMaxQuality, mQuality + QUALITY_STEP);
+        } else if (++mClearUpdateCount >= SCALE_UP_CLEAR_UPDATES && isScaleDwellElapsed(timestamp)) {
+            mScale = Math.min(MAX_SCALE, mScale + SCALE_STEP);
+            mScaleTimestamp = timestamp;
+            mClearUpdateCount = 0;
+        }
+    }
+
+    private boolean isScaleDwellElapsed(final long timestamp) {
+        return mScaleTimestamp == 0L || timestamp - mScaleTimestamp >= MIN_SCALE_DWELL_NS;
+    }
+}
@@ -0,0 +1,156 @@
+package com.obby.android.localscreenshare.server;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.obby.android.localscreenshare.support.Constants;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+final class ScreenFrameFlowController {
+    private static final int MAX_SAMPLES = 16;
+
+    private boolean mIsEnabled;
+
+    private long mDeliveredSize;
+
+    private long mInFlightSize;
+
+    private int mSampleIndex;
+
+    private int mSampleCount;
+
+    private volatile int mWindowSize;
+
+    @Nullable
+    private volatile Runnable mOnWindowOpenedListener;
+
+    @NonNull
+    private final Deque<InFlightFrame> mInFlightFrames = new ArrayDeque<>();
+
+    @NonNull
+    private final long[] mDeliveryRates = new long[MAX_SAMPLES];
+
+    @NonNull
+    private final long[] mRoundTripTimes = new long[MAX_SAMPLES];
+
+    private final int mMode;
+
+    ScreenFrameFlowController(final int mode) {
+        mMode = mode;
+        mWindowSize = mMode == Constants.FLOW_CONTROL_MODE_HIGH_THROUGHPUT
+            ? Constants.GRPC_MAX_FLOW_CONTROL_WINDOW : Constants.GRPC_FLOW_CONTROL_WINDOW;
+    }
+
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    public void setOnWindowOpenedListener(@Nullable final Runnable listener) {
+        mOnWindowOpenedListener = listener;
+    }
+
+    public synchronized boolean isWindowOpen() {
+        return !mIsEnabled || mInFlightFrames.isEmpty() || mInFlightSize < mWindowSize;
+    }
+
+    public synchronized void onFrameSent(final long timestamp, final long size) {
+        mInFlightFrames.addLast(new InFlightFrame(timestamp, size, SystemClock.elapsedRealtimeNanos(),
+            mDeliveredSize));
+        mInFlightSize += size;
+    }
+
+    public void onFrameAcked(final long timestamp) {
+        final boolean isWindowOpened;
+        synchronized (this) {
+            final boolean isWindowOpen = isWindowOpen();
+            mIsEnabled = true;
+
+            InFlightFrame ackedFrame = null;
+            while (!mInFlightFrames.isEmpty() && mInFlightFrames.peekFirst().mTimestamp <= timestamp) {
+                ackedFrame = mInFlightFrames.pollFirst();
+                mInFlightSize -= ackedFrame.mSize;
+                mDeliveredSize += ackedFrame.mSize;
+            }
+
+            if (ackedFrame != null) {
+                addSample(ackedFrame, SystemClock.elapsedRealtimeNanos());
+            }
+            isWindowOpened = !isWindowOpen && isWindowOpen();
+        }
+
+        if (isWindowOpened) {
+            notifyWindowOpened();
+        }
+    }
+
+    public void disable() {
+        synchronized (this) {
+            mIsEnabled = false;
+            mInFlightFrames.clear();
+            mInFlightSize = 0L;
+        }
+        notifyWindowOpened();
+    }
+
+    private void addSample(@NonNull final InFlightFrame frame, final long timestamp) {
+        final long roundTripTime = Math.max(1L, timestamp - frame.mSendTimestamp);
+        mRoundTripTimes[mSampleIndex] = roundTripTime;
+        mDeliveryRates[mSampleIndex] = Math.round((double) (mDeliveredSize - frame.mDeliveredSize) / roundTripTime
+            * Duration.ofSeconds(1L).toNanos());
+        mSampleIndex = (mSampleIndex + 1) % MAX_SAMPLES;
+        mSampleCount = Math.min(mSampleCount + 1, MAX_SAMPLES);
+
+        long minRoundTripTime = Long.MAX_VALUE;
+        long maxDeliveryRate = 0L;
+        for (int i = 0; i < mSampleCount; i++) {
+            minRoundTripTime = Math.min(minRoundTripTime, mRoundTripTimes[i]);
+            maxDeliveryRate = Math.max(maxDeliveryRate, mDeliveryRates[i]);
+        }
+
+        final double bandwidthDelayProduct =
+            (double) maxDeliveryRate * minRoundTripTime / Duration.ofSeconds(1L).toNanos();
+        mWindowSize = (int) Math.max(Constants.GRPC_MIN_FLOW_CONTROL_WINDOW,
+            Math.min(Constants.GRPC_MAX_FLOW_CONTROL_WINDOW, Math.round(bandwidthDelayProduct * getGain())));
+    }
+
+    private double getGain() {
+        switch (mMode) {
+            case Constants.FLOW_CONTROL_MODE_LOW_LATENCY:
+                return 1d;
+            case Constants.FLOW_CONTROL_MODE_HIGH_THROUGHPUT:
+                return 4d;
+            default:
+                return 2d;
+        }
+    }
+
+    private void notifyWindowOpened() {
+        final Runnable listener = mOnWindowOpenedListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private static class InFlightFrame {
+        private final long mTimestamp;
+
+        private final long mSize;
+
+        private final long mSendTimestamp;
+
+        private final long mDeliveredSize;
+
+        private InFlightFrame(final long timestamp, final long size, final long sendTimestamp,
+            final long deliveredSize) {
+            mTimestamp = timestamp;
+            mSize = size;
+            mSendTimestamp = sendTimestamp;
+            mDeliveredSize = deliveredSize;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.obby.android.localscreenshare.server;
+
+import androidx.annotation.NonNull;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+
+final class ScreenFrameMarshaller implements MethodDescriptor.Marshaller<ScreenFrame> {
+    @NonNull
+    private final MethodDescriptor.Marshaller<ScreenFrame> mMarshaller =
+        ProtoLiteUtils.marshaller(ScreenFrame.getDefaultInstance());
+
+    @NonNull
+    private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+    @Override
+    public InputStream stream(ScreenFrame value) {
+        final ByteString data = value.getDataSize() > 0 ? null : mBufferPool.serialize(value);
+        return data == null ? mMarshaller.stream(value) : new SerializedInputStream(data);
+    }
+
+    @Override
+    public ScreenFrame parse(InputStream stream) {
+        return mMarshaller.parse(stream);
+    }
+
+    private static class SerializedInputStream extends InputStream implements Drainable, KnownLength {
+        @NonNull
+        private final ByteString mData;
+
+        private int mPosition;
+
+        private SerializedInputStream(@NonNull final ByteString data) {
+            mData = data;
+        }
+
+        @Override
+        public int read() {
+            return mPosition < mData.size() ? mData.byteAt(mPosition++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+
+            final int length = Math.min(len, available());
+            if (length <= 0) {
+                return -1;
+            }
+
+            mData.copyTo(b, mPosition, off, length);
+            mPosition += length;
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return mData.size() - mPosition;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            final int length = available();
+            mData.substring(mPosition).writeTo(target);
+            mPosition = mData.size();
+            return length;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.obby.android.localscreenshare.server;
+
+import android.net.nsd.NsdServiceInfo;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class ScreenFrameMjpegTransport implements ScreenFrameTransport {
+    private static final ScreenEncoding SCREEN_ENCODING = ScreenFrameUtils.KEY_FRAME_ONLY_ENCODING;
+
+    private static final String BOUNDARY = "lss-screen-frame";
+
+    private static final byte[] RESPONSE_HEADER = ("HTTP/1.1 200 OK\r\n"
+        + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+        + "Cache-Control: no-cache, no-store, must-revalidate\r\n"
+        + "Pragma: no-cache\r\n"
+        + "Connection: close\r\n"
+        + "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] PART_TRAILER = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int SEND_BUFFER_SIZE = 1024 * 1024;
+
+    private volatile boolean mIsReleased;
+
+    @NonNull
+    private volatile Set<ScreenEncoding> mScreenEncodings = Collections.emptySet();
+
+    @Nullable
+    private ScreenFrame mScreenFrame;
+
+    private final String mTag = "ScreenFrameMjpegTransport@" + hashCode();
+
+    @NonNull
+    private final ServerSocketChannel mServerChannel;
+
+    @NonNull
+    private final Selector mSelector;
+
+    @NonNull
+    private final Listener mListener;
+
+    @NonNull
+    private final List<Connection> mConnections = new ArrayList<>();
+
+    @NonNull
+    private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+    @NonNull
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocateDirect(4096);
+
+    @NonNull
+    private final Object mLock = new Object();
+
+    @NonNull
+    private final Thread mThread = new Thread(this::select, "lss-screen-frame-mjpeg-transport");
+
+    ScreenFrameMjpegTransport(final int port, @NonNull final Listener listener) throws IOException {
+        mListener = listener;
+        mSelector = Selector.open();
+        mServerChannel = ServerSocketChannel.open();
+        try {
+            mServerChannel.bind(new InetSocketAddress(port));
+            mServerChannel.configureBlocking(false);
+            mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            mServerChannel.close();
+            mSelector.close();
+            throw e;
+        }
+        mThread.start();
+    }
+
+    public int getPort() {
+        return mServerChannel.socket().getLocalPort();
+    }
+
+    @NonNull
+    @Override
+    public Set<ScreenEncoding> getScreenEncodings() {
+        return mScreenEncodings;
+    }
+
+    @Override
+    public void postScreenFrames(@NonNull final Map<ScreenEncoding, ScreenFrame> frames) {
+        final ScreenFrame frame = frames.get(SCREEN_ENCODING);
+        if (mIsReleased || frame == null || frame.getSecure() || frame.getData().isEmpty()) {
+            return;
+        }
+
+        synchronized (mLock) {
+            if (mIsReleased) {
+                return;
+            }
+
+            final ScreenFrame screenFrame = mScreenFrame;
+            mScreenFrame = frame;
+            mBufferPool.retain(mScreenFrame);
+            mBufferPool.release(screenFrame);
+            mConnections.forEach(connection -> connection.postScreenFrame(frame));
+        }
+        mSelector.wakeup();
+    }
+
+    @Override
+    public void setNsdServiceAttributes(@NonNull final NsdServiceInfo serviceInfo) {
+    }
+
+    @Override
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            mBufferPool.release(mScreenFrame);
+            mScreenFrame = null;
+            mConnections.forEach(Connection::close);
+            mConnections.clear();
+            mScreenEncodings = Collections.emptySet();
+        }
+
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            // ignored
+        }
+
+        try {
+            mServerChannel.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private void select() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        try {
+            while (!mIsReleased) {
+                mSelector.select();
+                for (final SelectionKey key : mSelector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((Connection) key.attachment());
+                    }
+                }
+                mSelector.selectedKeys().clear();
+
+                synchronized (mLock) {
+                    if (mConnections.removeIf(connection -> !write(connection))) {
+                        updateScreenEncodings();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!mIsReleased) {
+                Log.e(mTag, "select: select failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = mServerChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        Log.i(mTag, String.format("accept: connection accepted, remoteAddress = %s", channel.getRemoteAddress()));
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setSendBufferSize(SEND_BUFFER_SIZE);
+        final Connection connection = new Connection(channel, (InetSocketAddress) channel.getRemoteAddress());
+        connection.mKey = channel.register(mSelector, SelectionKey.OP_READ, connection);
+        synchronized (mLock) {
+            if (mScreenFrame != null) {
+                connection.postScreenFrame(mScreenFrame);
+            }
+            mConnections.add(connection);
+            updateScreenEncodings();
+        }
+        mListener.onConnectionOpened(connection.mRemoteAddress);
+    }
+
+    private void read(@NonNull final Connection connection) {
+        try {
+            mReadBuffer.clear();
+            if (connection.mChannel.read(mReadBuffer) >= 0) {
+                return;
+            }
+        } catch (IOException e) {
+            // ignored
+        }
+
+        synchronized (mLock) {
+            mConnections.remove(connection);
+            updateScreenEncodings();
+        }
+        connection.close();
+    }
+
+    @SuppressWarnings("DataFlowIssue")
+    private boolean write(@NonNull final Connection connection) {
+        try {
+            while (true) {
+                if (connection.mWriteBuffers == null) {
+                    final ScreenFrame frame = connection.takeScreenFrame();
+                    if (frame == null) {
+                        connection.mKey.interestOps(SelectionKey.OP_READ);
+                        return true;
+                    }
+
+                    connection.mSendingScreenFrame = frame;
+                    connection.mWriteBuffers = new ByteBuffer[]{
+                        ByteBuffer.wrap(("--" + BOUNDARY + "\r\n"
+                            + "Content-Type: image/jpeg\r\n"
+                            + "Content-Length: " + frame.getData().size() + "\r\n"
+                            + "\r\n").getBytes(StandardCharsets.US_ASCII)),
+                        frame.getData().asReadOnlyByteBuffer(),
+                        ByteBuffer.wrap(PART_TRAILER)
+                    };
+                }
+
+                mListener.onDataSent(connection.mRemoteAddress, connection.mChannel.write(connection.mWriteBuffers));
+                if (connection.mWriteBuffers[connection.mWriteBuffers.length - 1].hasRemaining()) {
+                    connection.beginStall();
+                    connection.mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return true;
+                }
+
+                connection.mWriteBuffers = null;
+                connection.endStall();
+                if (connection.mSendingScreenFrame != null) {
+                    mBufferPool.release(connection.mSendingScreenFrame);
+                    connection.mSendingScreenFrame = null;
+                    mListener.onFrameSent(connection.mRemoteAddress);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(mTag, "write: write failed", e);
+            connection.close();
+            return false;
+        }
+    }
+
+    private void updateScreenEncodings() {
+        mScreenEncodings = mConnections.isEmpty() ? Collections.emptySet() : Set.of(SCREEN_ENCODING);
+    }
+
+    private class Connection {
+        @Nullable
+        private ScreenFrame mScreenFrame;
+
+        @Nullable
+        private ScreenFrame mSendingScreenFrame;
+
+        @Nullable
+        private SelectionKey mKey;
+
+        private long mStallTimestamp = -1L;
+
+        @Nullable
+        private ByteBuffer[] mWriteBuffers = {ByteBuffer.wrap(RESPONSE_HEADER)};
+
+        @NonNull
+        private final SocketChannel mChannel;
+
+        @NonNull
+        private final InetSocketAddress mRemoteAddress;
+
+        private Connection(@NonNull final SocketChannel channel, @NonNull final InetSocketAddress remoteAddress) {
+            mChannel = channel;
+            mRemoteAddress = remoteAddress;
+        }
+
+        private void postScreenFrame(@NonNull final ScreenFrame frame) {
+            final ScreenFrame screenFrame = mScreenFrame;
+            if (screenFrame != null) {
+                mListener.onFrameDropped(mRemoteAddress);
+            }
+            mScreenFrame = frame;
+            mBufferPool.retain(mScreenFrame);
+            mBufferPool.release(screenFrame);
+        }
+
+        @Nullable
+        private ScreenFrame takeScreenFrame() {
+            synchronized (mLock) {
+                final ScreenFrame frame = mScreenFrame;
+                mScreenFrame = null;
+                return frame;
+            }
+        }
+
+        private void beginStall() {
+            if (mStallTimestamp < 0L) {
+                mStallTimestamp = SystemClock.elapsedRealtimeNanos();
+            }
+        }
+
+        private void endStall() {
+            if (mStallTimestamp >= 0L) {
+                mListener.onStalled(mRemoteAddress, SystemClock.elapsedRealtimeNanos() - mStallTimestamp);
+                mStallTimestamp = -1L;
+            }
+        }
+
+        private void close() {
+            endStall();
+            mBufferPool.release(takeScreenFrame());
+            mBufferPool.release(mSendingScreenFrame);
+            mSendingScreenFrame = null;
+            mWriteBuffers = null;
+
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                // ignored
+            }
+            mListener.onConnectionClosed(mRemoteAddress);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.obby.android.localscreenshare.server;
+
+import android.net.nsd.NsdServiceInfo;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+final class ScreenFrameMulticaster implements ScreenFrameTransport {
+    private static final long REFRESH_INTERVAL_NS = Duration.ofSeconds(1L).toNanos();
+
+    private static final int SEND_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MAX_PACKET_COUNT = 0xffff;
+
+    private volatile boolean mIsReleased;
+
+    @Nullable
+    private ScreenFrame mScreenFrame;
+
+    @Nullable
+    private ScreenFrame mPendingScreenFrame;
+
+    private boolean mIsSendScheduled;
+
+    private long mRefreshTimestamp;
+
+    private int mFrameId;
+
+    private final String mTag = "ScreenFrameMulticaster@" + hashCode();
+
+    @NonNull
+    private final InetAddress mGroup;
+
+    private final int mPort;
+
+    @NonNull
+    private final MulticastSocket mSocket;
+
+    @NonNull
+    private final ByteBuffer mPacketBuffer = ByteBuffer.allocate(Constants.MULTICAST_PACKET_SIZE);
+
+    @NonNull
+    private final DatagramPacket mPacket;
+
+    @NonNull
+    private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+    @NonNull
+    private final Object mLock = new Object();
+
+    @NonNull
+    private final ScheduledExecutorService mExecutor = new ScheduledThreadPoolExecutor(
+        1, new BasicThreadFactory.Builder()
+        .namingPattern("lss-screen-frame-multicaster-%d")
+        .wrappedFactory(runnable -> new Thread(runnable) {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                super.run();
+            }
+        })
+        .build());
+
+    ScreenFrameMulticaster(@NonNull final InetAddress group, final int port) throws IOException {
+        this(group, port, createSocket());
+    }
+
+    @VisibleForTesting
+    ScreenFrameMulticaster(@NonNull final InetAddress group, final int port, @NonNull final MulticastSocket socket) {
+        mGroup = group;
+        mPort = port;
+        mSocket = socket;
+        mPacket = new DatagramPacket(mPacketBuffer.array(), 0, mGroup, mPort);
+        mExecutor.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_NS, REFRESH_INTERVAL_NS,
+            TimeUnit.NANOSECONDS);
+    }
+
+    @NonNull
+    @Override
+    public Set<ScreenEncoding> getScreenEncodings() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void postScreenFrames(@NonNull final Map<ScreenEncoding, ScreenFrame> frames) {
+        final ScreenFrame frame = frames.get(ScreenEncoding.getDefaultInstance());
+        if (mIsReleased || frame == null) {
+            return;
+        }
+
+        synchronized (mLock) {
+            if (mIsReleased) {
+                return;
+            }
+
+            final ScreenFrame screenFrame = mScreenFrame;
+            mScreenFrame = ScreenFrameUtils.merge(screenFrame, frame);
+            mBufferPool.retain(mScreenFrame);
+            mBufferPool.release(screenFrame);
+
+            final ScreenFrame pendingScreenFrame = mPendingScreenFrame;
+            mPendingScreenFrame = ScreenFrameUtils.merge(pendingScreenFrame, frame);
+            mBufferPool.retain(mPendingScreenFrame);
+            mBufferPool.release(pendingScreenFrame);
+            scheduleSend();
+        }
+    }
+
+    @Override
+    public void setNsdServiceAttributes(@NonNull final NsdServiceInfo serviceInfo) {
+        serviceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_MULTICAST_GROUP, mGroup.getHostAddress());
+        serviceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_MULTICAST_PORT, String.valueOf(mPort));
+    }
+
+    @Override
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            mBufferPool.release(mScreenFrame);
+            mBufferPool.release(mPendingScreenFrame);
+            mScreenFrame = null;
+            mPendingScreenFrame = null;
+        }
+
+        mExecutor.shutdownNow();
+        mSocket.close();
+    }
+
+    private void refresh() {
+        synchronized (mLock) {
+            if (mIsReleased || mScreenFrame == null || mPendingScreenFrame != null
+                || SystemClock.elapsedRealtimeNanos() - mRefreshTimestamp < REFRESH_INTERVAL_NS) {
+                return;
+            }
+
+            mPendingScreenFrame = mScreenFrame;
+            mBufferPool.retain(mPendingScreenFrame);
+            scheduleSend();
+        }
+    }
+
+    private void scheduleSend() {
+        if (mIsSendScheduled) {
+            return;
+        }
+
+        mIsSendScheduled = true;
+        try {
+            mExecutor.execute(this::send);
+        } catch (RejectedExecutionException e) {
+            mIsSendScheduled = false;
+        }
+    }
+
+    @SuppressWarnings("DataFlowIssue")
+    private void send() {
+        while (true) {
+            final ScreenFrame frame;
+            synchronized (mLock) {
+                if (mIsReleased || mPendingScreenFrame == null) {
+                    mIsSendScheduled = false;
+                    return;
+                }
+
+                final long timestamp = SystemClock.elapsedRealtimeNanos();
+                if (timestamp - mRefreshTimestamp >= REFRESH_INTERVAL_NS) {
+                    mRefreshTimestamp = timestamp;
+                    frame = mScreenFrame;
+                    mBufferPool.retain(frame);
+                    mBufferPool.release(mPendingScreenFrame);
+                } else {
+                    frame = mPendingScreenFrame;
+                }
+                mPendingScreenFrame = null;
+            }
+
+            try {
+                sendFrame(Optional.ofNullable(mBufferPool.serialize(frame)).orElseGet(frame::toByteString));
+            } catch (IOException e) {
+                Log.w(mTag, "send: send screen frame failed", e);
+            } finally {
+                mBufferPool.release(frame);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void sendFrame(@NonNull final ByteString data) throws IOException {
+        final int payloadSize = Constants.MULTICAST_PACKET_SIZE - Constants.MULTICAST_PACKET_HEADER_SIZE;
+        final int packetCount = Math.max(1, (data.size() + payloadSize - 1) / payloadSize);
+        if (packetCount > MAX_PACKET_COUNT) {
+            Log.w(mTag, String.format("sendFrame: screen frame too large, size = %d", data.size()));
+            return;
+        }
+
+        final int frameId = mFrameId++;
+        for (int i = 0; i < packetCount; i++) {
+            final int offset = i * payloadSize;
+            final int length = Math.min(payloadSize, data.size() - offset);
+            mPacketBuffer.clear();
+            mPacketBuffer.putInt(frameId);
+            mPacketBuffer.putShort((short) i);
+            mPacketBuffer.putShort((short) packetCount);
+            data.copyTo(mPacketBuffer.array(), offset, mPacketBuffer.position(), length);
+            mPacket.setLength(mPacketBuffer.position() + length);
+            mSocket.send(mPacket);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @NonNull
+    private static MulticastSocket createSocket() throws IOException {
+        final MulticastSocket socket = new MulticastSocket();
+        socket.setTimeToLive(1);
+        socket.setLoopbackMode(false);
+        socket.setSendBufferSize(SEND_BUFFER_SIZE);
+        return socket;
+    }
+}
@@ -0,0 +1,357 @@
+package com.obby.android.localscreenshare.server;
+
+import android.net.nsd.NsdServiceInfo;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.util.Pools;
+
+import com.google.protobuf.CodedOutputStream;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+import com.obby.android.localscreenshare.utils.ScreenFrameUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class ScreenFrameSocketTransport implements ScreenFrameTransport {
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static final int INITIAL_BUFFER_CAPACITY = 256 * 1024;
+
+    private static final int SEND_BUFFER_SIZE = 1024 * 1024;
+
+    private volatile boolean mIsReleased;
+
+    @Nullable
+    private ScreenFrame mScreenFrame;
+
+    private final String mTag = "ScreenFrameSocketTransport@" + hashCode();
+
+    @NonNull
+    private final ServerSocketChannel mServerChannel;
+
+    @NonNull
+    private final Selector mSelector;
+
+    @NonNull
+    private final Listener mListener;
+
+    @NonNull
+    private final List<Connection> mConnections = new ArrayList<>();
+
+    @NonNull
+    private final Pools.Pool<ByteBuffer> mBuffers = new Pools.SynchronizedPool<>(MAX_POOL_SIZE);
+
+    @NonNull
+    private final ScreenFrameBufferPool mBufferPool = ScreenFrameBufferPool.get();
+
+    @NonNull
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocateDirect(1024);
+
+    @NonNull
+    private final Object mLock = new Object();
+
+    @NonNull
+    private final Thread mThread = new Thread(this::select, "lss-screen-frame-socket-transport");
+
+    ScreenFrameSocketTransport(@NonNull final Listener listener) throws IOException {
+        mListener = listener;
+        mSelector = Selector.open();
+        mServerChannel = ServerSocketChannel.open();
+        try {
+            mServerChannel.bind(new InetSocketAddress(0));
+            mServerChannel.configureBlocking(false);
+            mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            mServerChannel.close();
+            mSelector.close();
+            throw e;
+        }
+        mThread.start();
+    }
+
+    public int getPort() {
+        return mServerChannel.socket().getLocalPort();
+    }
+
+    @NonNull
+    @Override
+    public Set<ScreenEncoding> getScreenEncodings() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void postScreenFrames(@NonNull final Map<ScreenEncoding, ScreenFrame> frames) {
+        final ScreenFrame frame = frames.get(ScreenEncoding.getDefaultInstance());
+        if (mIsReleased || frame == null) {
+            return;
+        }
+
+        synchronized (mLock) {
+            if (mIsReleased) {
+                return;
+            }
+
+            final ScreenFrame screenFrame = mScreenFrame;
+            mScreenFrame = ScreenFrameUtils.merge(screenFrame, frame);
+            mBufferPool.retain(mScreenFrame);
+            mBufferPool.release(screenFrame);
+            mConnections.forEach(connection -> connection.postScreenFrame(frame));
+        }
+        mSelector.wakeup();
+    }
+
+    @Override
+    public void setNsdServiceAttributes(@NonNull final NsdServiceInfo serviceInfo) {
+        serviceInfo.setAttribute(Constants.NSD_SERVICE_ATTR_SOCKET_PORT, String.valueOf(getPort()));
+    }
+
+    @Override
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            mBufferPool.release(mScreenFrame);
+            mScreenFrame = null;
+            mConnections.forEach(Connection::close);
+            mConnections.clear();
+        }
+
+        try {
+            mSelector.close();
+        } catch (IOException e) {
+            // ignored
+        }
+
+        try {
+            mServerChannel.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private void select() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        try {
+            while (!mIsReleased) {
+                mSelector.select();
+                for (final SelectionKey key : mSelector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((Connection) key.attachment());
+                    }
+                }
+                mSelector.selectedKeys().clear();
+
+                synchronized (mLock) {
+                    mConnections.removeIf(connection -> !write(connection));
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!mIsReleased) {
+                Log.e(mTag, "select: select failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = mServerChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        Log.i(mTag, String.format("accept: connection accepted, remoteAddress = %s", channel.getRemoteAddress()));
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setSendBufferSize(SEND_BUFFER_SIZE);
+        final Connection connection = new Connection(channel, (InetSocketAddress) channel.getRemoteAddress());
+        connection.mKey = channel.register(mSelector, SelectionKey.OP_READ, connection);
+        synchronized (mLock) {
+            if (mScreenFrame != null) {
+                connection.postScreenFrame(mScreenFrame);
+            }
+            mConnections.add(connection);
+        }
+        mListener.onConnectionOpened(connection.mRemoteAddress);
+    }
+
+    private void read(@NonNull final Connection connection) {
+        try {
+            mReadBuffer.clear();
+            if (connection.mChannel.read(mReadBuffer) >= 0) {
+                return;
+            }
+        } catch (IOException e) {
+            // ignored
+        }
+
+        synchronized (mLock) {
+            mConnections.remove(connection);
+        }
+        connection.close();
+    }
+
+    private boolean write(@NonNull final Connection connection) {
+        try {
+            while (true) {
+                if (connection.mBodyBuffer == null) {
+                    final ScreenFrame frame = connection.takeScreenFrame();
+                    if (frame == null) {
+                        connection.mKey.interestOps(SelectionKey.OP_READ);
+                        return true;
+                    }
+
+                    try {
+                        connection.mBodyBuffer = serialize(frame);
+                    } finally {
+                        mBufferPool.release(frame);
+                    }
+                    connection.mHeaderBuffer.clear();
+                    connection.mHeaderBuffer.putInt(connection.mBodyBuffer.remaining());
+                    connection.mHeaderBuffer.flip();
+                }
+
+                mListener.onDataSent(connection.mRemoteAddress,
+                    connection.mChannel.write(connection.getWriteBuffers()));
+                if (connection.mBodyBuffer.hasRemaining()) {
+                    connection.beginStall();
+                    connection.mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return true;
+                }
+
+                mBuffers.release(connection.mBodyBuffer);
+                connection.mBodyBuffer = null;
+                connection.endStall();
+                mListener.onFrameSent(connection.mRemoteAddress);
+            }
+        } catch (IOException e) {
+            Log.w(mTag, "write: write failed", e);
+            connection.close();
+            return false;
+        }
+    }
+
+    @NonNull
+    private ByteBuffer serialize(@NonNull final ScreenFrame frame) throws IOException {
+        final int size = frame.getSerializedSize();
+        ByteBuffer buffer = mBuffers.acquire();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, INITIAL_BUFFER_CAPACITY));
+        }
+
+        buffer.clear();
+        final CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+        frame.writeTo(output);
+        output.flush();
+        buffer.flip();
+        return buffer;
+    }
+
+    private class Connection {
+        @Nullable
+        private ScreenFrame mScreenFrame;
+
+        @Nullable
+        private SelectionKey mKey;
+
+        @Nullable
+        private ByteBuffer mBodyBuffer;
+
+        private long mStallTimestamp = -1L;
+
+        @NonNull
+        private final SocketChannel mChannel;
+
+        @NonNull
+        private final InetSocketAddress mRemoteAddress;
+
+        @NonNull
+        private final ByteBuffer mHeaderBuffer = ByteBuffer.allocateDirect(Integer.BYTES);
+
+        @NonNull
+        private final ByteBuffer[] mWriteBuffers = new ByteBuffer[2];
+
+        private Connection(@NonNull final SocketChannel channel, @NonNull final InetSocketAddress remoteAddress) {
+            mChannel = channel;
+            mRemoteAddress = remoteAddress;
+        }
+
+        private void postScreenFrame(@NonNull final ScreenFrame frame) {
+            final ScreenFrame screenFrame = mScreenFrame;
+            if (screenFrame != null) {
+                mListener.onFrameDropped(mRemoteAddress);
+            }
+            mScreenFrame = ScreenFrameUtils.merge(screenFrame, frame);
+            mBufferPool.retain(mScreenFrame);
+            mBufferPool.release(screenFrame);
+        }
+
+        @Nullable
+        private ScreenFrame takeScreenFrame() {
+            synchronized (mLock) {
+                final ScreenFrame frame = mScreenFrame;
+                mScreenFrame = null;
+                return frame;
+            }
+        }
+
+        @NonNull
+        private ByteBuffer[] getWriteBuffers() {
+            mWriteBuffers[0] = mHeaderBuffer;
+            mWriteBuffers[1] = mBodyBuffer;
+            return mWriteBuffers;
+        }
+
+        private void beginStall() {
+            if (mStallTimestamp < 0L) {
+                mStallTimestamp = SystemClock.elapsedRealtimeNanos();
+            }
+        }
+
+        private void endStall() {
+            if (mStallTimestamp >= 0L) {
+                mListener.onStalled(mRemoteAddress, SystemClock.elapsedRealtimeNanos() - mStallTimestamp);
+                mStallTimestamp = -1L;
+            }
+        }
+
+        private void close() {
+            endStall();
+            mBufferPool.release(takeScreenFrame());
+            if (mBodyBuffer != null) {
+                mBuffers.release(mBodyBuffer);
+                mBodyBuffer = null;
+            }
+
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                // ignored
+            }
+            mListener.onConnectionClosed(mRemoteAddress);
+        }
+    }
+}
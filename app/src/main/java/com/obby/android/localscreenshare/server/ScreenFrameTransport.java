@@ -0,0 +1,37 @@
+package com.obby.android.localscreenshare.server;
+
+import android.net.nsd.NsdServiceInfo;
+
+import androidx.annotation.NonNull;
+
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+
+interface ScreenFrameTransport {
+    @NonNull
+    Set<ScreenEncoding> getScreenEncodings();
+
+    void postScreenFrames(@NonNull Map<ScreenEncoding, ScreenFrame> frames);
+
+    void setNsdServiceAttributes(@NonNull NsdServiceInfo serviceInfo);
+
+    void release();
+
+    interface Listener {
+        void onConnectionOpened(@NonNull InetSocketAddress remoteAddress);
+
+        void onConnectionClosed(@NonNull InetSocketAddress remoteAddress);
+
+        void onDataSent(@NonNull InetSocketAddress remoteAddress, long size);
+
+        void onFrameSent(@NonNull InetSocketAddress remoteAddress);
+
+        void onFrameDropped(@NonNull InetSocketAddress remoteAddress);
+
+        void onStalled(@NonNull InetSocketAddress remoteAddress, long duration);
+    }
+}
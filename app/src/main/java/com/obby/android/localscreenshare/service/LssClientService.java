@@ -19,6 +19,8 @@ import android.graphics.PaintFlagsDrawFilter;
 import android.graphics.PixelFormat;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.os.IBinder;
 import android.text.format.Formatter;
@@ -28,6 +30,7 @@ import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
@@ -62,16 +65,23 @@ import com.obby.android.localscreenshare.client.LssClientObserver;
 import com.obby.android.localscreenshare.client.LssClientStats;
 import com.obby.android.localscreenshare.client.LssClientStatsListener;
 import com.obby.android.localscreenshare.discovery.LssServiceInfo;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamRequest;
+import com.obby.android.localscreenshare.support.BitmapPool;
 import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.MetricsServer;
 import com.obby.android.localscreenshare.support.Preferences;
 import com.obby.android.localscreenshare.support.Reference;
 import com.obby.android.localscreenshare.utils.ResourceUtils;
+import com.obby.android.localscreenshare.utils.WindowUtils;
 
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 
+import java.net.InetSocketAddress;
 import java.text.NumberFormat;
 import java.util.Objects;
+import java.util.Optional;
 
 public class LssClientService extends Service {
     private static final String NOTIFICATION_CHANNEL_ID = "lss-client-service";
@@ -82,7 +92,7 @@ public class LssClientService extends Service {
     private LssServiceInfo mServiceInfo;
 
     @Nullable
-    private LssClient mClient;
+    private volatile LssClient mClient;
 
     @Nullable
     private LssClientStats mClientStats;
@@ -100,11 +110,25 @@ public class LssClientService extends Service {
 
     private long mInboundDataRate;
 
+    @Nullable
+    private WifiManager.MulticastLock mMulticastLock;
+
     private final String mTag = "LssClientService@" + hashCode();
 
     @NonNull
     private final LssClientStatsListener mClientStatsListener = this::onClientStatsChanged;
 
+    @NonNull
+    private final MetricsServer.Source mMetricsSource =
+        writer -> Optional.ofNullable(mClient).ifPresent(client -> client.writeMetrics(writer));
+
+    @NonNull
+    private final Preferences.Observer mPreferencesObserver = key -> {
+        if (key == null || Preferences.KEY_VIEWER_RELAY_ENABLED.equals(key)) {
+            updateRelay();
+        }
+    };
+
     @NonNull
     private final LssClientObserver mClientObserver = new LssClientObserver() {
         @Override
@@ -117,9 +141,14 @@ public class LssClientService extends Service {
 
             if (mScreenShareViewer == null) {
                 mScreenShareViewer = new ScreenShareViewer(LssClientService.this, mServiceInfo);
+                mScreenShareViewer.setOnDisplaySizeChangedListener(size ->
+                    Optional.ofNullable(mClient).ifPresent(client -> client.setDisplaySize(size)));
+                mScreenShareViewer.setOnViewportChangedListener(viewport ->
+                    Optional.ofNullable(mClient).ifPresent(client -> client.setViewport(viewport)));
             }
 
             mScreenShareViewer.show();
+            updateRelay();
         }
 
         @SuppressWarnings("DataFlowIssue")
@@ -156,6 +185,9 @@ public class LssClientService extends Service {
                 .setPositiveButton(android.R.string.ok, (dialog, which) -> {
                     mClient = new LssClient(mServiceInfo.getHostAddress(), mServiceInfo.getPort());
                     mClient.setClientStatsListener(mClientStatsListener);
+                    mClient.setScreenStreamRequest(buildScreenStreamRequest());
+                    mClient.setMulticastAddress(getMulticastAddress());
+                    mClient.setSocketAddress(getSocketAddress());
                     mScreenShareLoading.show();
                     mClient.start(mClientObserver);
                 })
@@ -193,6 +225,11 @@ public class LssClientService extends Service {
         final IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(Constants.ACTION_STOP_CLIENT_SERVICE);
         ContextCompat.registerReceiver(this, mBroadcastReceiver, intentFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        Preferences.get().addObserver(mPreferencesObserver);
+        MetricsServer.get().addSource(mMetricsSource);
+
+        mMulticastLock = getApplicationContext().getSystemService(WifiManager.class).createMulticastLock(mTag);
+        mMulticastLock.setReferenceCounted(false);
     }
 
     @Override
@@ -201,6 +238,15 @@ public class LssClientService extends Service {
         Log.i(mTag, "onDestroy: service destroyed");
 
         unregisterReceiver(mBroadcastReceiver);
+        Preferences.get().removeObserver(mPreferencesObserver);
+        MetricsServer.get().removeSource(mMetricsSource);
+        BitmapPool.get().clear();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapPool.get().trimMemory(level);
     }
 
     @Nullable
@@ -265,6 +311,9 @@ public class LssClientService extends Service {
 
         mClient = new LssClient(mServiceInfo.getHostAddress(), mServiceInfo.getPort());
         mClient.setClientStatsListener(mClientStatsListener);
+        mClient.setScreenStreamRequest(buildScreenStreamRequest());
+        mClient.setMulticastAddress(getMulticastAddress());
+        mClient.setSocketAddress(getSocketAddress());
         mScreenShareLoading = new ScreenShareLoading(this, mServiceInfo);
         mScreenShareLoading.show();
         mClient.start(mClientObserver);
@@ -298,10 +347,58 @@ public class LssClientService extends Service {
             mClient = null;
         }
 
+        if (mMulticastLock != null) {
+            mMulticastLock.release();
+        }
+
         ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
         stopSelf();
     }
 
+    private void updateRelay() {
+        if (mClient == null || mServiceInfo == null) {
+            return;
+        }
+
+        if (mIsConnected && Preferences.get().isViewerRelayEnabled()) {
+            mClient.startRelay(this, mServiceInfo);
+        } else {
+            mClient.stopRelay();
+        }
+    }
+
+    @NonNull
+    private ScreenStreamRequest buildScreenStreamRequest() {
+        final Rect windowBounds = WindowUtils.getMaximumWindowBounds(this);
+        final int maxSize = Math.max(windowBounds.width(), windowBounds.height());
+        return ScreenStreamRequest.newBuilder()
+            .setEncoding(ScreenEncoding.newBuilder()
+                .setMaxWidth(maxSize)
+                .setMaxHeight(maxSize))
+            .setMaxChunkSize(Constants.SCREEN_FRAME_CHUNK_SIZE)
+            .build();
+    }
+
+    @Nullable
+    private InetSocketAddress getMulticastAddress() {
+        if (mServiceInfo.getMulticastGroup() == null || mServiceInfo.getMulticastPort() <= 0) {
+            return null;
+        }
+
+        if (mMulticastLock != null) {
+            mMulticastLock.acquire();
+        }
+        return new InetSocketAddress(mServiceInfo.getMulticastGroup(), mServiceInfo.getMulticastPort());
+    }
+
+    @Nullable
+    private InetSocketAddress getSocketAddress() {
+        if (mServiceInfo.getSocketPort() <= 0) {
+            return null;
+        }
+        return new InetSocketAddress(mServiceInfo.getHostAddress(), mServiceInfo.getSocketPort());
+    }
+
     private void onClientStatsChanged(@NonNull final LssClientStats clientStats) {
         mClientStats = clientStats;
         updateInboundDataRate(mClientStats.getInboundDataRate());
@@ -421,19 +518,37 @@ public class LssClientService extends Service {
 
         private static final int SCALE_STEP = 1;
 
+        private static final float MIN_ZOOM = 1f;
+
+        private static final float MAX_ZOOM = 8f;
+
         private int mOpacity;
 
         private int mScale;
 
+        private float mZoom = MIN_ZOOM;
+
         @Nullable
         private Reference<Bitmap> mFrame;
 
         @Nullable
         private Size mFrameSize;
 
+        @Nullable
+        private Size mDisplaySize;
+
         @Nullable
         private Matrix mMatrix;
 
+        @Nullable
+        private RectF mViewport;
+
+        @Nullable
+        private OnDisplaySizeChangedListener mOnDisplaySizeChangedListener;
+
+        @Nullable
+        private OnViewportChangedListener mOnViewportChangedListener;
+
         @Nullable
         private AlertDialog mDialog;
 
@@ -458,6 +573,12 @@ public class LssClientService extends Service {
         @NonNull
         private final GestureDetector mGestureDetector;
 
+        @NonNull
+        private final ScaleGestureDetector mScaleGestureDetector;
+
+        @NonNull
+        private final PointF mViewportCenter = new PointF(0.5f, 0.5f);
+
         @NonNull
         private final PointF mLocation = new PointF();
 
@@ -512,6 +633,20 @@ public class LssClientService extends Service {
                     return true;
                 }
 
+                @Override
+                public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float distanceX,
+                    float distanceY) {
+                    if (mFrameView.isActivated() || mZoom <= MIN_ZOOM || mFrameView.getWidth() <= 0
+                        || mFrameView.getHeight() <= 0) {
+                        return false;
+                    }
+
+                    mViewportCenter.offset(distanceX / mFrameView.getWidth() / mZoom,
+                        distanceY / mFrameView.getHeight() / mZoom);
+                    updateViewport();
+                    return true;
+                }
+
                 @Override
                 public void onLongPress(@NonNull MotionEvent e) {
                     mFrameView.setActivated(true);
@@ -519,6 +654,26 @@ public class LssClientService extends Service {
                 }
             };
 
+        @SuppressWarnings("FieldCanBeLocal")
+        @NonNull
+        private final ScaleGestureDetector.OnScaleGestureListener mOnScaleGestureListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                @Override
+                public boolean onScale(@NonNull ScaleGestureDetector detector) {
+                    if (mFrameView.isActivated() || mFrameView.getWidth() <= 0 || mFrameView.getHeight() <= 0) {
+                        return false;
+                    }
+
+                    final float focusX = detector.getFocusX() / mFrameView.getWidth() - 0.5f;
+                    final float focusY = detector.getFocusY() / mFrameView.getHeight() - 0.5f;
+                    final float zoom = Math.max(MIN_ZOOM, Math.min(mZoom * detector.getScaleFactor(), MAX_ZOOM));
+                    mViewportCenter.offset(focusX / mZoom - focusX / zoom, focusY / mZoom - focusY / zoom);
+                    mZoom = zoom;
+                    updateViewport();
+                    return true;
+                }
+            };
+
         @SuppressLint("InflateParams")
         private ScreenShareViewer(@NonNull final Context context, @NonNull final LssServiceInfo serviceInfo) {
             mContext = new ContextThemeWrapper(context, R.style.AppTheme);
@@ -530,6 +685,15 @@ public class LssClientService extends Service {
                 PixelFormat.TRANSLUCENT);
             mLayoutParams.gravity = Gravity.CENTER;
             mGestureDetector = new GestureDetector(mContext, mOnGestureListener);
+            mScaleGestureDetector = new ScaleGestureDetector(mContext, mOnScaleGestureListener);
+        }
+
+        public void setOnDisplaySizeChangedListener(@Nullable final OnDisplaySizeChangedListener listener) {
+            mOnDisplaySizeChangedListener = listener;
+        }
+
+        public void setOnViewportChangedListener(@Nullable final OnViewportChangedListener listener) {
+            mOnViewportChangedListener = listener;
         }
 
         @SuppressWarnings("DataFlowIssue")
@@ -582,6 +746,10 @@ public class LssClientService extends Service {
 
         public void dismiss() {
             mFrameSize = null;
+            mDisplaySize = null;
+            mZoom = MIN_ZOOM;
+            mViewportCenter.set(0.5f, 0.5f);
+            updateViewport();
             mLayoutParams.flags &= ~WindowManager.LayoutParams.FLAG_SECURE;
             mFrameView.setImageBitmap(null);
 
@@ -668,6 +836,7 @@ public class LssClientService extends Service {
                     (float) minSize / mFrameSize.getHeight(), scale);
                 mLayoutParams.width = (int) (mFrameSize.getWidth() * finalScale);
                 mLayoutParams.height = (int) (mFrameSize.getHeight() * finalScale);
+                updateDisplaySize(mLayoutParams.width, mLayoutParams.height);
             }
 
             getLocationBounds(mBounds);
@@ -675,6 +844,40 @@ public class LssClientService extends Service {
             mLayoutParams.y = (int) (mBounds.top + mBounds.height() * mLocation.y);
         }
 
+        private void updateDisplaySize(final int width, final int height) {
+            if (mDisplaySize != null && mDisplaySize.getWidth() == width && mDisplaySize.getHeight() == height) {
+                return;
+            }
+
+            mDisplaySize = new Size(width, height);
+            if (mOnDisplaySizeChangedListener != null) {
+                mOnDisplaySizeChangedListener.onDisplaySizeChanged(mDisplaySize);
+            }
+        }
+
+        private void updateViewport() {
+            final RectF viewport;
+            if (mZoom <= MIN_ZOOM) {
+                mViewportCenter.set(0.5f, 0.5f);
+                viewport = null;
+            } else {
+                final float halfSize = 0.5f / mZoom;
+                mViewportCenter.set(Math.max(halfSize, Math.min(mViewportCenter.x, 1f - halfSize)),
+                    Math.max(halfSize, Math.min(mViewportCenter.y, 1f - halfSize)));
+                viewport = new RectF(mViewportCenter.x - halfSize, mViewportCenter.y - halfSize,
+                    mViewportCenter.x + halfSize, mViewportCenter.y + halfSize);
+            }
+
+            if (Objects.equals(mViewport, viewport)) {
+                return;
+            }
+
+            mViewport = viewport;
+            if (mOnViewportChangedListener != null) {
+                mOnViewportChangedListener.onViewportChanged(mViewport);
+            }
+        }
+
         private void updateLocation(final int x, final int y) {
             getLocationBounds(mBounds);
 
@@ -777,6 +980,13 @@ public class LssClientService extends Service {
                 }
             });
 
+            final MaterialSwitch relaySettingView = settingsDialog.findViewById(R.id.relay_setting);
+            relaySettingView.setOnCheckedChangeListener((buttonView, isChecked) -> {
+                if (Preferences.get().isViewerRelayEnabled() != isChecked) {
+                    Preferences.get().setViewerRelayEnabled(isChecked);
+                }
+            });
+
             settingsDialog.setOnShowListener(dialog -> {
                 settingsDialog.getBehavior().setState(BottomSheetBehavior.STATE_EXPANDED);
                 opacitySettingView.setValue(mOpacity);
@@ -785,6 +995,8 @@ public class LssClientService extends Service {
                 keepScreenOnSettingView.jumpDrawablesToCurrentState();
                 roundedSettingView.setChecked(Preferences.get().isViewerRounded());
                 roundedSettingView.jumpDrawablesToCurrentState();
+                relaySettingView.setChecked(Preferences.get().isViewerRelayEnabled());
+                relaySettingView.jumpDrawablesToCurrentState();
             });
 
             return settingsDialog;
@@ -830,6 +1042,7 @@ public class LssClientService extends Service {
                             break;
                     }
 
+                    mScaleGestureDetector.onTouchEvent(event);
                     return mGestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
                 }
             };
@@ -841,5 +1054,13 @@ public class LssClientService extends Service {
 
             return frameView;
         }
+
+        private interface OnDisplaySizeChangedListener {
+            void onDisplaySizeChanged(@NonNull Size size);
+        }
+
+        private interface OnViewportChangedListener {
+            void onViewportChanged(@Nullable RectF viewport);
+        }
     }
 }
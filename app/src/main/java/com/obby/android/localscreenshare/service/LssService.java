@@ -10,7 +10,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.ServiceInfo;
 import android.content.res.Configuration;
-import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.graphics.PointF;
@@ -48,7 +47,6 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.view.ContextThemeWrapper;
-import androidx.camera.core.ImageProcessingUtil;
 import androidx.core.app.NotificationChannelCompat;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
@@ -58,9 +56,10 @@ import androidx.core.content.ContextCompat;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.color.MaterialColors;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
-import com.google.protobuf.ByteString;
 import com.obby.android.localscreenshare.MainActivity;
 import com.obby.android.localscreenshare.R;
+import com.obby.android.localscreenshare.capture.ScreenFramePipeline;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
 import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
 import com.obby.android.localscreenshare.server.LssServer;
 import com.obby.android.localscreenshare.server.LssServerInfo;
@@ -68,18 +67,20 @@ import com.obby.android.localscreenshare.server.LssServerInfoListener;
 import com.obby.android.localscreenshare.server.LssServerStats;
 import com.obby.android.localscreenshare.server.LssServerStatsListener;
 import com.obby.android.localscreenshare.support.Constants;
+import com.obby.android.localscreenshare.support.MetricsServer;
 import com.obby.android.localscreenshare.support.Preferences;
 import com.obby.android.localscreenshare.utils.WindowUtils;
 
 import org.apache.commons.lang3.time.DurationFormatUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class LssService extends Service {
     private static final String NOTIFICATION_CHANNEL_ID = "lss-service";
@@ -109,6 +110,9 @@ public class LssService extends Service {
 
     private volatile ImageReader mImageReader;
 
+    @Nullable
+    private Image mDeferredImage;
+
     private volatile long mFrameTimestamp;
 
     @Nullable
@@ -118,7 +122,7 @@ public class LssService extends Service {
     private ScreenShareChip mScreenShareChip;
 
     @Nullable
-    private Bitmap mScreenFrameBitmap;
+    private ScreenFramePipeline mScreenFramePipeline;
 
     @Nullable
     private LssServerInfo mServerInfo;
@@ -136,6 +140,8 @@ public class LssService extends Service {
 
     private int mProjectionQuality;
 
+    private boolean mIsProjectionParallelEncoding;
+
     private int mProjectionFrameRate;
 
     private final String mTag = "LssService@" + hashCode();
@@ -166,6 +172,47 @@ public class LssService extends Service {
     @NonNull
     private final LssServerStatsListener mServerStatsListener = this::onServerStatsChanged;
 
+    @NonNull
+    private final MetricsServer.Source mMetricsSource = writer -> {
+        Optional.ofNullable(mScreenFramePipeline).ifPresent(pipeline -> pipeline.writeMetrics(writer));
+        Optional.ofNullable(mServer).ifPresent(server -> server.writeMetrics(writer));
+    };
+
+    @NonNull
+    private final ScreenFramePipeline.Listener mScreenFramePipelineListener = new ScreenFramePipeline.Listener() {
+        @Override
+        public void onScreenFramesPublished(@NonNull Map<ScreenEncoding, ScreenFrame> frames) {
+            Optional.ofNullable(mServer).ifPresent(server -> server.postScreenFrames(frames));
+        }
+
+        @Override
+        public void onScreenFrameSuppressed() {
+            Optional.ofNullable(mServer).ifPresent(LssServer::suppressScreenFrame);
+        }
+
+        @NonNull
+        @Override
+        public Set<ScreenEncoding> getScreenEncodings() {
+            return Optional.ofNullable(mServer)
+                .map(LssServer::getScreenEncodings)
+                .orElseGet(() -> Set.of(ScreenEncoding.getDefaultInstance()));
+        }
+
+        @Override
+        public int getEncodeQuality(@NonNull ScreenEncoding encoding) {
+            return Optional.ofNullable(mServer)
+                .map(server -> server.getEncodeQuality(encoding))
+                .orElse(mProjectionQuality);
+        }
+
+        @Override
+        public int getEncodeScale(@NonNull ScreenEncoding encoding) {
+            return Optional.ofNullable(mServer)
+                .map(server -> server.getEncodeScale(encoding))
+                .orElse(100);
+        }
+    };
+
     @NonNull
     private final MediaProjection.Callback mMediaProjectionCallback = new MediaProjection.Callback() {
         @Override
@@ -190,9 +237,12 @@ public class LssService extends Service {
     @NonNull
     private final ImageReader.OnImageAvailableListener mOnImageAvailableListener =
         new ImageReader.OnImageAvailableListener() {
-            private final long mNanosPerSecond = Duration.ofSeconds(1L).toNanos();
+            private long mCaptureTimestamp = -1L;
+
+            @NonNull
+            private final Runnable mDeferredCaptureRunnable = () -> Optional.ofNullable(mImageReader)
+                .ifPresent(this::onImageAvailable);
 
-            @SuppressLint("RestrictedApi")
             @Override
             public void onImageAvailable(ImageReader reader) {
                 if (mImageReader != reader) {
@@ -200,48 +250,62 @@ public class LssService extends Service {
                 }
 
                 synchronized (mImageReaderLock) {
-                    if (mImageReader != reader) {
+                    if (mImageReader != reader || mScreenFramePipeline == null) {
                         return;
                     }
 
-                    try (final Image image = reader.acquireLatestImage()) {
-                        if (image == null) {
-                            return;
+                    final int maxFrameRate = Optional.ofNullable(mServer)
+                        .map(LssServer::getMaxFrameRate)
+                        .filter(frameRate -> frameRate > 0)
+                        .map(frameRate -> Math.min(frameRate, mProjectionFrameRate))
+                        .orElse(mProjectionFrameRate);
+                    final long delay = mCaptureTimestamp + mScreenFramePipeline.getFrameInterval(maxFrameRate)
+                        - SystemClock.elapsedRealtimeNanos();
+                    if (mCaptureTimestamp >= 0L && delay > 0L) {
+                        if (mScreenFramePipeline.isThrottled()) {
+                            final Image image = acquireLatestImage(reader);
+                            if (image != null && mScreenFramePipeline.isChanged(image)) {
+                                capture(image);
+                                return;
+                            }
+                            mDeferredImage = image;
                         }
 
-                        if (mFrameTimestamp >= 0L
-                            && image.getTimestamp() - mFrameTimestamp < mNanosPerSecond / mProjectionFrameRate) {
-                            return;
-                        }
+                        Optional.ofNullable(mImageReaderHandler).ifPresent(handler -> {
+                            handler.removeCallbacks(mDeferredCaptureRunnable);
+                            handler.postDelayed(mDeferredCaptureRunnable, TimeUnit.NANOSECONDS.toMillis(delay) + 1L);
+                        });
+                        return;
+                    }
 
-                        mFrameTimestamp = image.getTimestamp();
+                    final Image image = acquireLatestImage(reader);
+                    if (image != null) {
+                        capture(image);
+                    }
+                }
+            }
 
-                        if (mScreenFrameBitmap == null || mScreenFrameBitmap.getWidth() != image.getWidth()
-                            || mScreenFrameBitmap.getHeight() != image.getHeight()) {
-                            Optional.ofNullable(mScreenFrameBitmap).ifPresent(Bitmap::recycle);
-                            mScreenFrameBitmap =
-                                Bitmap.createBitmap(image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888);
-                        }
+            @Nullable
+            private Image acquireLatestImage(@NonNull final ImageReader reader) {
+                final Image image = reader.acquireLatestImage();
+                if (image == null) {
+                    final Image deferredImage = mDeferredImage;
+                    mDeferredImage = null;
+                    return deferredImage;
+                }
 
-                        final Image.Plane plane = image.getPlanes()[0];
-                        plane.getBuffer().rewind();
-                        ImageProcessingUtil.copyByteBufferToBitmap(mScreenFrameBitmap, plane.getBuffer(),
-                            plane.getRowStride());
-
-                        final byte[] data;
-                        try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                            mScreenFrameBitmap.compress(Bitmap.CompressFormat.JPEG, mProjectionQuality, outputStream);
-                            data = outputStream.toByteArray();
-                        } catch (IOException e) {
-                            return;
-                        }
+                closeDeferredImage();
+                return image;
+            }
 
-                        mServer.postScreenFrame(ScreenFrame.newBuilder()
-                            .setTimestamp(mFrameTimestamp)
-                            .setData(ByteString.copyFrom(data))
-                            .setSecure(mIsProjectionSecure)
-                            .build());
-                    }
+            @SuppressWarnings("DataFlowIssue")
+            private void capture(@NonNull final Image image) {
+                try (image) {
+                    mCaptureTimestamp = SystemClock.elapsedRealtimeNanos();
+                    mFrameTimestamp = image.getTimestamp();
+
+                    mScreenFramePipeline.capture(image, mFrameTimestamp, mProjectionQuality,
+                        mIsProjectionSecure, mIsProjectionParallelEncoding);
                 }
             }
         };
@@ -281,6 +345,8 @@ public class LssService extends Service {
             mProjectionScale = Preferences.get().getProjectionScale();
             mProjectionQuality = Preferences.get().getProjectionQuality();
             mProjectionFrameRate = Preferences.get().getProjectionFrameRate();
+            mIsProjectionParallelEncoding = Preferences.get().isProjectionParallelEncoding();
+            Optional.ofNullable(mServer).ifPresent(server -> server.setMaxEncodeQuality(mProjectionQuality));
             updateProjectionSize();
             return;
         }
@@ -295,10 +361,14 @@ public class LssService extends Service {
                 break;
             case Preferences.KEY_PROJECTION_QUALITY:
                 mProjectionQuality = Preferences.get().getProjectionQuality();
+                Optional.ofNullable(mServer).ifPresent(server -> server.setMaxEncodeQuality(mProjectionQuality));
                 break;
             case Preferences.KEY_PROJECTION_FRAME_RATE:
                 mProjectionFrameRate = Preferences.get().getProjectionFrameRate();
                 break;
+            case Preferences.KEY_PROJECTION_PARALLEL_ENCODING:
+                mIsProjectionParallelEncoding = Preferences.get().isProjectionParallelEncoding();
+                break;
             default:
                 break;
         }
@@ -312,11 +382,13 @@ public class LssService extends Service {
         final IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(Constants.ACTION_STOP_SERVICE);
         ContextCompat.registerReceiver(this, mBroadcastReceiver, intentFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        MetricsServer.get().addSource(mMetricsSource);
 
         mIsProjectionSecure = Preferences.get().isProjectionSecure();
         mProjectionScale = Preferences.get().getProjectionScale();
         mProjectionQuality = Preferences.get().getProjectionQuality();
         mProjectionFrameRate = Preferences.get().getProjectionFrameRate();
+        mIsProjectionParallelEncoding = Preferences.get().isProjectionParallelEncoding();
         Preferences.get().addObserver(mPreferencesObserver);
     }
 
@@ -327,6 +399,7 @@ public class LssService extends Service {
 
         unregisterReceiver(mBroadcastReceiver);
         Preferences.get().removeObserver(mPreferencesObserver);
+        MetricsServer.get().removeSource(mMetricsSource);
     }
 
     @Override
@@ -371,9 +444,13 @@ public class LssService extends Service {
             return START_NOT_STICKY;
         }
 
+        mScreenFramePipeline = new ScreenFramePipeline(mScreenFramePipelineListener);
+
         mServer = new LssServer(this);
         mServer.setServerInfoListener(mServerInfoListener);
         mServer.setServerStatsListener(mServerStatsListener);
+        mServer.setPipelineStatsSupplier(mScreenFramePipeline::collect);
+        mServer.setFrameRateSupplier(mScreenFramePipeline::collectFrameRate);
 
         try {
             mServer.start();
@@ -433,11 +510,12 @@ public class LssService extends Service {
         synchronized (mImageReaderLock) {
             mFrameTimestamp = -1L;
 
-            if (mScreenFrameBitmap != null) {
-                mScreenFrameBitmap.recycle();
-                mScreenFrameBitmap = null;
+            if (mScreenFramePipeline != null) {
+                mScreenFramePipeline.release();
+                mScreenFramePipeline = null;
             }
 
+            closeDeferredImage();
             if (mImageReader != null) {
                 mImageReader.close();
                 mImageReader = null;
@@ -510,15 +588,24 @@ public class LssService extends Service {
                 return;
             }
 
+            closeDeferredImage();
             mImageReader.close();
             mImageReader = ImageReader.newInstance(mProjectionSize.getWidth(), mProjectionSize.getHeight(),
                 PixelFormat.RGBA_8888, IMAGE_READER_MAX_IMAGES);
             mFrameTimestamp = -1L;
+            Optional.ofNullable(mScreenFramePipeline).ifPresent(ScreenFramePipeline::reset);
             mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mImageReaderHandler);
             mVirtualDisplay.setSurface(mImageReader.getSurface());
         }
     }
 
+    private void closeDeferredImage() {
+        if (mDeferredImage != null) {
+            mDeferredImage.close();
+            mDeferredImage = null;
+        }
+    }
+
     private void registerServiceClient(@NonNull final Messenger messenger) {
         Log.i(mTag, "registerServiceClient: register service client");
 
@@ -0,0 +1,136 @@
+package com.obby.android.localscreenshare.support;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class BitmapPool {
+    private static final long MAX_POOL_BYTES = 64L * 1024L * 1024L;
+
+    private long mPoolBytes;
+
+    private final long mMaxPoolBytes;
+
+    @NonNull
+    private final Map<Long, Deque<Bitmap>> mBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+
+    @NonNull
+    private final LongAdder mHitCount = new LongAdder();
+
+    @NonNull
+    private final LongAdder mMissCount = new LongAdder();
+
+    @NonNull
+    private final LongAdder mEvictionCount = new LongAdder();
+
+    private BitmapPool() {
+        this(MAX_POOL_BYTES);
+    }
+
+    @VisibleForTesting
+    BitmapPool(final long maxPoolBytes) {
+        mMaxPoolBytes = maxPoolBytes;
+    }
+
+    @NonNull
+    public static BitmapPool get() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    @NonNull
+    public Bitmap acquire(final int width, final int height, @NonNull final Bitmap.Config config) {
+        synchronized (this) {
+            final Deque<Bitmap> bitmaps = mBitmaps.get(getKey(width, height, config));
+            final Bitmap bitmap = bitmaps == null ? null : bitmaps.pollLast();
+            if (bitmap != null) {
+                mPoolBytes -= bitmap.getAllocationByteCount();
+                mHitCount.increment();
+                return bitmap;
+            }
+        }
+
+        mMissCount.increment();
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    public void release(@Nullable final Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        final Bitmap.Config config = bitmap.getConfig();
+        if (!bitmap.isMutable() || config == null || bitmap.getAllocationByteCount() > mMaxPoolBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            mBitmaps.computeIfAbsent(getKey(bitmap.getWidth(), bitmap.getHeight(), config),
+                key -> new ArrayDeque<>()).addLast(bitmap);
+            mPoolBytes += bitmap.getAllocationByteCount();
+            trimToSize(mMaxPoolBytes);
+        }
+    }
+
+    public synchronized void trimMemory(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+            || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(0L);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(mMaxPoolBytes / 2L);
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0L);
+    }
+
+    public void writeMetrics(@NonNull final MetricsWriter writer) {
+        final long poolBytes;
+        synchronized (this) {
+            poolBytes = mPoolBytes;
+        }
+        writer.counter("lss_bitmap_pool_hits_total", "Bitmaps reused from the pool.", mHitCount.sum())
+            .counter("lss_bitmap_pool_misses_total", "Bitmaps allocated because the pool had no match.",
+                mMissCount.sum())
+            .counter("lss_bitmap_pool_evictions_total", "Pooled bitmaps evicted to stay within budget.",
+                mEvictionCount.sum())
+            .gauge("lss_bitmap_pool_bytes", "Bytes held by pooled bitmaps.", poolBytes);
+    }
+
+    private void trimToSize(final long maxPoolBytes) {
+        final Iterator<Deque<Bitmap>> iterator = mBitmaps.values().iterator();
+        while (mPoolBytes > maxPoolBytes && iterator.hasNext()) {
+            final Deque<Bitmap> bitmaps = iterator.next();
+            while (mPoolBytes > maxPoolBytes && !bitmaps.isEmpty()) {
+                final Bitmap bitmap = bitmaps.pollFirst();
+                mPoolBytes -= bitmap.getAllocationByteCount();
+                mEvictionCount.increment();
+                bitmap.recycle();
+            }
+
+            if (bitmaps.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static long getKey(final int width, final int height, @NonNull final Bitmap.Config config) {
+        return (long) width << 32 | (long) height << 8 | config.ordinal();
+    }
+
+    private static class InstanceHolder {
+        private static final BitmapPool INSTANCE = new BitmapPool();
+    }
+}
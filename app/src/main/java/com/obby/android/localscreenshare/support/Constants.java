@@ -19,6 +19,22 @@ public final class Constants {
 
     public static final String NSD_SERVICE_ATTR_NAME = "name";
 
+    public static final String NSD_SERVICE_ATTR_HOP_COUNT = "hop";
+
+    public static final String NSD_SERVICE_ATTR_LOAD = "load";
+
+    public static final String NSD_SERVICE_ATTR_RELAY_CHAIN = "chain";
+
+    public static final String NSD_SERVICE_RELAY_CHAIN_SEPARATOR = ",";
+
+    public static final int MAX_RELAY_HOP_COUNT = 7;
+
+    public static final String NSD_SERVICE_ATTR_MULTICAST_GROUP = "mgroup";
+
+    public static final String NSD_SERVICE_ATTR_MULTICAST_PORT = "mport";
+
+    public static final String NSD_SERVICE_ATTR_SOCKET_PORT = "sport";
+
     public static final String ACTION_WIFI_AP_STATE_CHANGED = "android.net.wifi.WIFI_AP_STATE_CHANGED";
 
     @SuppressWarnings("SpellCheckingInspection")
@@ -49,5 +65,21 @@ public final class Constants {
 
     public static final int GRPC_FLOW_CONTROL_WINDOW = 1024 * 1024;
 
+    public static final int GRPC_MIN_FLOW_CONTROL_WINDOW = 64 * 1024;
+
+    public static final int GRPC_MAX_FLOW_CONTROL_WINDOW = 16 * 1024 * 1024;
+
+    public static final int FLOW_CONTROL_MODE_AUTO = 0;
+
+    public static final int FLOW_CONTROL_MODE_LOW_LATENCY = 1;
+
+    public static final int FLOW_CONTROL_MODE_HIGH_THROUGHPUT = 2;
+
     public static final int GRPC_MAX_INBOUND_MESSAGE_SIZE = 8 * 1024 * 1024;
+
+    public static final int SCREEN_FRAME_CHUNK_SIZE = 64 * 1024;
+
+    public static final int MULTICAST_PACKET_SIZE = 1400;
+
+    public static final int MULTICAST_PACKET_HEADER_SIZE = 8;
 }
@@ -0,0 +1,62 @@
+package com.obby.android.localscreenshare.support;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Histogram {
+    @NonNull
+    private final double[] mBounds;
+
+    @NonNull
+    private final LongAdder[] mCounts;
+
+    @NonNull
+    private final LongAdder mCount = new LongAdder();
+
+    @NonNull
+    private final DoubleAdder mSum = new DoubleAdder();
+
+    public Histogram(@NonNull final double... bounds) {
+        mBounds = bounds.clone();
+        Arrays.sort(mBounds);
+        mCounts = new LongAdder[mBounds.length];
+        Arrays.setAll(mCounts, i -> new LongAdder());
+    }
+
+    public void record(final double value) {
+        final int index = Arrays.binarySearch(mBounds, value);
+        final int bucket = index >= 0 ? index : -index - 1;
+        if (bucket < mCounts.length) {
+            mCounts[bucket].increment();
+        }
+        mCount.increment();
+        mSum.add(value);
+    }
+
+    @NonNull
+    double[] getBounds() {
+        return mBounds;
+    }
+
+    @NonNull
+    long[] getCumulativeCounts() {
+        final long[] counts = new long[mCounts.length];
+        long count = 0L;
+        for (int i = 0; i < mCounts.length; i++) {
+            count += mCounts[i].sum();
+            counts[i] = count;
+        }
+        return counts;
+    }
+
+    long getCount() {
+        return mCount.sum();
+    }
+
+    double getSum() {
+        return mSum.sum();
+    }
+}
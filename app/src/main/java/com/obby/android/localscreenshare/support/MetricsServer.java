@@ -0,0 +1,159 @@
+package com.obby.android.localscreenshare.support;
+
+import android.os.Debug;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public final class MetricsServer {
+    private static final String METRICS_PATH = "/metrics";
+
+    private static final int READ_TIMEOUT_MS = (int) Duration.ofSeconds(5L).toMillis();
+
+    private final String mTag = "MetricsServer@" + hashCode();
+
+    @NonNull
+    private final List<Source> mSources = new CopyOnWriteArrayList<>();
+
+    @Nullable
+    private ServerSocket mServerSocket;
+
+    private MetricsServer() {
+    }
+
+    @NonNull
+    public static MetricsServer get() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    public synchronized void addSource(@NonNull final Source source) {
+        mSources.add(source);
+        if (mServerSocket == null && Preferences.get().isMetricsServerEnabled()) {
+            start(Preferences.get().getMetricsServerPort());
+        }
+    }
+
+    public synchronized void removeSource(@NonNull final Source source) {
+        mSources.remove(source);
+        if (mSources.isEmpty()) {
+            stop();
+        }
+    }
+
+    private void start(final int port) {
+        final ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            Log.e(mTag, String.format("start: start metrics server failed, port = %d", port), e);
+            return;
+        }
+
+        Log.i(mTag, String.format("start: metrics server started, port = %d", port));
+        mServerSocket = serverSocket;
+        new Thread(() -> serve(serverSocket), "lss-metrics-server").start();
+    }
+
+    private void stop() {
+        Optional.ofNullable(mServerSocket).ifPresent(serverSocket -> {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        });
+        mServerSocket = null;
+    }
+
+    private void serve(@NonNull final ServerSocket serverSocket) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (!serverSocket.isClosed()) {
+            try (final Socket socket = serverSocket.accept()) {
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                handle(socket);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Log.w(mTag, "serve: handle request failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(@NonNull final Socket socket) throws IOException {
+        final BufferedReader reader =
+            new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        final String requestLine = reader.readLine();
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && !line.isEmpty());
+
+        final String[] request = requestLine == null ? new String[0] : requestLine.split(" ");
+        final boolean isFound = request.length >= 2 && request[1].split("\\?")[0].equals(METRICS_PATH);
+        final byte[] body = (isFound ? collect() : "Not Found\n").getBytes(StandardCharsets.UTF_8);
+        final String header = (isFound ? "HTTP/1.1 200 OK\r\n" : "HTTP/1.1 404 Not Found\r\n")
+            + "Content-Type: " + (isFound ? "text/plain; version=0.0.4; charset=utf-8" : "text/plain") + "\r\n"
+            + "Content-Length: " + body.length + "\r\n"
+            + "Connection: close\r\n"
+            + "\r\n";
+
+        final OutputStream output = socket.getOutputStream();
+        output.write(header.getBytes(StandardCharsets.US_ASCII));
+        output.write(body);
+        output.flush();
+    }
+
+    @NonNull
+    private String collect() {
+        final MetricsWriter writer = new MetricsWriter();
+        mSources.forEach(source -> source.writeMetrics(writer));
+
+        final Runtime runtime = Runtime.getRuntime();
+        writer.gauge("lss_heap_used_bytes", "Java heap in use.", runtime.totalMemory() - runtime.freeMemory())
+            .gauge("lss_heap_max_bytes", "Maximum Java heap size.", runtime.maxMemory())
+            .counter("lss_gc_count_total", "Garbage collections since process start.",
+                getRuntimeStat("art.gc.gc-count"))
+            .counter("lss_gc_time_seconds_total", "Time spent in garbage collection.",
+                getRuntimeStat("art.gc.gc-time") / 1000d)
+            .counter("lss_gc_blocking_count_total", "Blocking garbage collections since process start.",
+                getRuntimeStat("art.gc.blocking-gc-count"))
+            .counter("lss_gc_blocking_time_seconds_total", "Time spent in blocking garbage collection.",
+                getRuntimeStat("art.gc.blocking-gc-time") / 1000d);
+        return writer.toString();
+    }
+
+    private static long getRuntimeStat(@NonNull final String name) {
+        try {
+            return Long.parseLong(Debug.getRuntimeStat(name));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Source {
+        void writeMetrics(@NonNull MetricsWriter writer);
+    }
+
+    private static class InstanceHolder {
+        private static final MetricsServer INSTANCE = new MetricsServer();
+    }
+}
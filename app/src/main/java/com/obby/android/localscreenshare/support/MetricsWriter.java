@@ -0,0 +1,101 @@
+package com.obby.android.localscreenshare.support;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public final class MetricsWriter {
+    private static final String TYPE_COUNTER = "counter";
+
+    private static final String TYPE_GAUGE = "gauge";
+
+    private static final String TYPE_HISTOGRAM = "histogram";
+
+    @NonNull
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    @NonNull
+    private final Set<String> mNames = new HashSet<>();
+
+    @NonNull
+    public MetricsWriter counter(@NonNull final String name, @NonNull final String help, final double value,
+        @NonNull final String... labels) {
+        declare(name, help, TYPE_COUNTER);
+        sample(name, labels, null, value);
+        return this;
+    }
+
+    @NonNull
+    public MetricsWriter gauge(@NonNull final String name, @NonNull final String help, final double value,
+        @NonNull final String... labels) {
+        declare(name, help, TYPE_GAUGE);
+        sample(name, labels, null, value);
+        return this;
+    }
+
+    @NonNull
+    public MetricsWriter histogram(@NonNull final String name, @NonNull final String help,
+        @NonNull final Histogram histogram, @NonNull final String... labels) {
+        declare(name, help, TYPE_HISTOGRAM);
+        final double[] bounds = histogram.getBounds();
+        final long[] counts = histogram.getCumulativeCounts();
+        final long count = histogram.getCount();
+        for (int i = 0; i < bounds.length; i++) {
+            sample(name + "_bucket", labels, formatValue(bounds[i]), counts[i]);
+        }
+        sample(name + "_bucket", labels, "+Inf", count);
+        sample(name + "_sum", labels, null, histogram.getSum());
+        sample(name + "_count", labels, null, count);
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mBuilder.toString();
+    }
+
+    private void declare(@NonNull final String name, @NonNull final String help, @NonNull final String type) {
+        if (mNames.add(name)) {
+            mBuilder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            mBuilder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private void sample(@NonNull final String name, @NonNull final String[] labels, @Nullable final String bucket,
+        final double value) {
+        mBuilder.append(name);
+        if (labels.length > 0 || bucket != null) {
+            mBuilder.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    mBuilder.append(',');
+                }
+                mBuilder.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            if (bucket != null) {
+                if (labels.length > 0) {
+                    mBuilder.append(',');
+                }
+                mBuilder.append("le=\"").append(bucket).append('"');
+            }
+            mBuilder.append('}');
+        }
+        mBuilder.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    @NonNull
+    private static String formatValue(final double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    @NonNull
+    private static String escape(@NonNull final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
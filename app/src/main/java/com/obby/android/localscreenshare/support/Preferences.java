@@ -31,6 +31,22 @@ public final class Preferences {
 
     public static final String KEY_PROJECTION_QUALITY = "projection_quality";
 
+    public static final String KEY_PROJECTION_PARALLEL_ENCODING = "projection_parallel_encoding";
+
+    public static final String KEY_PROJECTION_MULTICAST = "projection_multicast";
+
+    public static final String KEY_PROJECTION_SOCKET_TRANSPORT = "projection_socket_transport";
+
+    public static final String KEY_PROJECTION_FLOW_CONTROL_MODE = "projection_flow_control_mode";
+
+    public static final String KEY_MJPEG_SERVER_ENABLED = "mjpeg_server_enabled";
+
+    public static final String KEY_MJPEG_SERVER_PORT = "mjpeg_server_port";
+
+    public static final String KEY_METRICS_SERVER_ENABLED = "metrics_server_enabled";
+
+    public static final String KEY_METRICS_SERVER_PORT = "metrics_server_port";
+
     public static final String KEY_SERVICE_CHIP_LOCATION = "service_chip_location";
 
     public static final String KEY_VIEWER_KEEP_SCREEN_ON = "viewer_keep_screen_on";
@@ -43,6 +59,8 @@ public final class Preferences {
 
     public static final String KEY_VIEWER_ROUNDED = "viewer_rounded";
 
+    public static final String KEY_VIEWER_RELAY_ENABLED = "viewer_relay_enabled";
+
     public static final String KEY_DISCOVERY_ENABLED = "discovery_enabled";
 
     private static final String PREF_FILE_NAME = "lss-preferences";
@@ -53,6 +71,10 @@ public final class Preferences {
 
     private static final int DEFAULT_SERVER_PORT = 8080;
 
+    private static final int DEFAULT_MJPEG_SERVER_PORT = 8081;
+
+    private static final int DEFAULT_METRICS_SERVER_PORT = 9090;
+
     private static final int DEFAULT_PROJECTION_SCALE = 100;
 
     private static final int DEFAULT_PROJECTION_QUALITY = 85;
@@ -171,6 +193,70 @@ public final class Preferences {
         mPreferences.edit().putInt(KEY_PROJECTION_QUALITY, quality).commit();
     }
 
+    public boolean isProjectionParallelEncoding() {
+        return mPreferences.getBoolean(KEY_PROJECTION_PARALLEL_ENCODING, false);
+    }
+
+    public void setProjectionParallelEncoding(final boolean isParallelEncoding) {
+        mPreferences.edit().putBoolean(KEY_PROJECTION_PARALLEL_ENCODING, isParallelEncoding).commit();
+    }
+
+    public boolean isProjectionMulticast() {
+        return mPreferences.getBoolean(KEY_PROJECTION_MULTICAST, false);
+    }
+
+    public void setProjectionMulticast(final boolean isMulticast) {
+        mPreferences.edit().putBoolean(KEY_PROJECTION_MULTICAST, isMulticast).commit();
+    }
+
+    public boolean isProjectionSocketTransport() {
+        return mPreferences.getBoolean(KEY_PROJECTION_SOCKET_TRANSPORT, false);
+    }
+
+    public void setProjectionSocketTransport(final boolean isSocketTransport) {
+        mPreferences.edit().putBoolean(KEY_PROJECTION_SOCKET_TRANSPORT, isSocketTransport).commit();
+    }
+
+    public int getProjectionFlowControlMode() {
+        return mPreferences.getInt(KEY_PROJECTION_FLOW_CONTROL_MODE, Constants.FLOW_CONTROL_MODE_AUTO);
+    }
+
+    public void setProjectionFlowControlMode(final int mode) {
+        mPreferences.edit().putInt(KEY_PROJECTION_FLOW_CONTROL_MODE, mode).commit();
+    }
+
+    public boolean isMjpegServerEnabled() {
+        return mPreferences.getBoolean(KEY_MJPEG_SERVER_ENABLED, false);
+    }
+
+    public void setMjpegServerEnabled(final boolean isEnabled) {
+        mPreferences.edit().putBoolean(KEY_MJPEG_SERVER_ENABLED, isEnabled).commit();
+    }
+
+    public int getMjpegServerPort() {
+        return mPreferences.getInt(KEY_MJPEG_SERVER_PORT, DEFAULT_MJPEG_SERVER_PORT);
+    }
+
+    public void setMjpegServerPort(final int port) {
+        mPreferences.edit().putInt(KEY_MJPEG_SERVER_PORT, port).commit();
+    }
+
+    public boolean isMetricsServerEnabled() {
+        return mPreferences.getBoolean(KEY_METRICS_SERVER_ENABLED, false);
+    }
+
+    public void setMetricsServerEnabled(final boolean isEnabled) {
+        mPreferences.edit().putBoolean(KEY_METRICS_SERVER_ENABLED, isEnabled).commit();
+    }
+
+    public int getMetricsServerPort() {
+        return mPreferences.getInt(KEY_METRICS_SERVER_PORT, DEFAULT_METRICS_SERVER_PORT);
+    }
+
+    public void setMetricsServerPort(final int port) {
+        mPreferences.edit().putInt(KEY_METRICS_SERVER_PORT, port).commit();
+    }
+
     public int getProjectionScale() {
         return mPreferences.getInt(KEY_PROJECTION_SCALE, DEFAULT_PROJECTION_SCALE);
     }
@@ -233,6 +319,14 @@ public final class Preferences {
         mPreferences.edit().putBoolean(KEY_VIEWER_ROUNDED, isRounded).commit();
     }
 
+    public boolean isViewerRelayEnabled() {
+        return mPreferences.getBoolean(KEY_VIEWER_RELAY_ENABLED, false);
+    }
+
+    public void setViewerRelayEnabled(final boolean isEnabled) {
+        mPreferences.edit().putBoolean(KEY_VIEWER_RELAY_ENABLED, isEnabled).commit();
+    }
+
     public boolean isDiscoveryEnabled() {
         return mPreferences.getBoolean(KEY_DISCOVERY_ENABLED, true);
     }
@@ -0,0 +1,195 @@
+package com.obby.android.localscreenshare.support;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.util.Pools;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public final class ScreenFrameBufferPool {
+    private static final int MAX_POOL_SIZE = 64;
+
+    private static final int INITIAL_BUFFER_CAPACITY = 64 * 1024;
+
+    @NonNull
+    private final Pools.Pool<Buffer> mBuffers = new Pools.SynchronizedPool<>(MAX_POOL_SIZE);
+
+    @NonNull
+    private final Map<ByteString, Buffer> mWrappedBuffers = new IdentityHashMap<>();
+
+    @NonNull
+    private final Map<ScreenFrame, SerializedFrame> mRetainedFrames = new IdentityHashMap<>();
+
+    @VisibleForTesting
+    ScreenFrameBufferPool() {
+    }
+
+    @NonNull
+    public static ScreenFrameBufferPool get() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    @NonNull
+    public Buffer acquire() {
+        final Buffer buffer = mBuffers.acquire();
+        if (buffer == null) {
+            return new Buffer();
+        }
+
+        buffer.reset();
+        return buffer;
+    }
+
+    @NonNull
+    public ByteString wrap(@NonNull final Buffer buffer) {
+        final ByteString data = UnsafeByteOperations.unsafeWrap(buffer.mData, 0, buffer.mSize);
+        synchronized (mWrappedBuffers) {
+            mWrappedBuffers.put(data, buffer);
+        }
+        return data;
+    }
+
+    public void recycle(@NonNull final Buffer buffer) {
+        mBuffers.release(buffer);
+    }
+
+    public void retain(@Nullable final ScreenFrame frame) {
+        if (frame == null) {
+            return;
+        }
+
+        synchronized (mWrappedBuffers) {
+            retain(frame.getData());
+            frame.getTilesList().stream().map(ScreenTile::getData).forEach(this::retain);
+            mRetainedFrames.computeIfAbsent(frame, key -> new SerializedFrame()).mReferenceCount++;
+        }
+    }
+
+    public void release(@Nullable final ScreenFrame frame) {
+        if (frame == null) {
+            return;
+        }
+
+        synchronized (mWrappedBuffers) {
+            release(frame.getData());
+            frame.getTilesList().stream().map(ScreenTile::getData).forEach(this::release);
+
+            final SerializedFrame serializedFrame = mRetainedFrames.get(frame);
+            if (serializedFrame != null && --serializedFrame.mReferenceCount <= 0) {
+                mRetainedFrames.remove(frame);
+                if (serializedFrame.mBuffer != null) {
+                    recycle(serializedFrame.mBuffer);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    public ByteString serialize(@NonNull final ScreenFrame frame) {
+        final SerializedFrame serializedFrame;
+        synchronized (mWrappedBuffers) {
+            serializedFrame = mRetainedFrames.get(frame);
+        }
+
+        if (serializedFrame == null) {
+            return null;
+        }
+
+        synchronized (serializedFrame) {
+            if (serializedFrame.mData == null) {
+                final Buffer buffer = acquire();
+                buffer.ensureCapacity(frame.getSerializedSize());
+                try {
+                    frame.writeTo(buffer);
+                } catch (IOException e) {
+                    recycle(buffer);
+                    return null;
+                }
+                serializedFrame.mBuffer = buffer;
+                serializedFrame.mData = UnsafeByteOperations.unsafeWrap(buffer.mData, 0, buffer.mSize);
+            }
+            return serializedFrame.mData;
+        }
+    }
+
+    public void release(@NonNull final ByteString data) {
+        synchronized (mWrappedBuffers) {
+            final Buffer buffer = mWrappedBuffers.get(data);
+            if (buffer == null) {
+                return;
+            }
+
+            if (--buffer.mReferenceCount <= 0) {
+                mWrappedBuffers.remove(data);
+                recycle(buffer);
+            }
+        }
+    }
+
+    private void retain(@NonNull final ByteString data) {
+        final Buffer buffer = mWrappedBuffers.get(data);
+        if (buffer != null) {
+            buffer.mReferenceCount++;
+        }
+    }
+
+    public static final class Buffer extends OutputStream {
+        @NonNull
+        private byte[] mData = new byte[INITIAL_BUFFER_CAPACITY];
+
+        private int mSize;
+
+        private int mReferenceCount;
+
+        private Buffer() {
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(mSize + 1);
+            mData[mSize++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            ensureCapacity(mSize + len);
+            System.arraycopy(b, off, mData, mSize, len);
+            mSize += len;
+        }
+
+        private void reset() {
+            mSize = 0;
+            mReferenceCount = 0;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > mData.length) {
+                mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+            }
+        }
+    }
+
+    private static final class SerializedFrame {
+        private int mReferenceCount;
+
+        @Nullable
+        private Buffer mBuffer;
+
+        @Nullable
+        private ByteString mData;
+    }
+
+    private static class InstanceHolder {
+        private static final ScreenFrameBufferPool INSTANCE = new ScreenFrameBufferPool();
+    }
+}
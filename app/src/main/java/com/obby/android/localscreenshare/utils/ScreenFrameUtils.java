@@ -0,0 +1,125 @@
+package com.obby.android.localscreenshare.utils;
+
+import android.graphics.Rect;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ScreenFrameUtils {
+    public static final ScreenEncoding KEY_FRAME_ONLY_ENCODING = ScreenEncoding.newBuilder()
+        .setQuality(-1)
+        .build();
+
+    public static boolean isKeyFrameOnly(@NonNull final ScreenEncoding encoding) {
+        return encoding.getQuality() < 0;
+    }
+
+    public static boolean isKeyFrame(@NonNull final ScreenFrame frame) {
+        return frame.getKeyFrame() || !frame.getData().isEmpty();
+    }
+
+    @NonNull
+    public static ScreenFrame merge(@Nullable final ScreenFrame frame, @NonNull final ScreenFrame newFrame) {
+        if (frame == null || isKeyFrame(newFrame)) {
+            return newFrame;
+        }
+
+        final List<Rect> newTileBounds = newFrame.getTilesList()
+            .stream()
+            .map(ScreenFrameUtils::getTileBounds)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        final List<ScreenTile> tiles = Stream.concat(frame.getTilesList()
+                .stream()
+                .filter(tile -> !isTileCovered(tile, newFrame.getTilesList(), newTileBounds)),
+                newFrame.getTilesList().stream())
+            .collect(Collectors.toList());
+
+        return frame.toBuilder()
+            .setTimestamp(newFrame.getTimestamp())
+            .setSecure(newFrame.getSecure())
+            .clearTiles()
+            .addAllTiles(tiles)
+            .build();
+    }
+
+    @Nullable
+    public static Rect getTileBounds(@NonNull final ScreenTile tile) {
+        if (tile.getWidth() > 0 && tile.getHeight() > 0) {
+            return new Rect(tile.getLeft(), tile.getTop(), tile.getLeft() + tile.getWidth(),
+                tile.getTop() + tile.getHeight());
+        }
+
+        final Size size = getJpegSize(tile.getData());
+        return size == null ? null : new Rect(tile.getLeft(), tile.getTop(), tile.getLeft() + size.getWidth(),
+            tile.getTop() + size.getHeight());
+    }
+
+    @Nullable
+    public static Size getJpegSize(@NonNull final ByteString data) {
+        if (data.size() < 4 || getUnsignedShort(data, 0) != 0xffd8) {
+            return null;
+        }
+
+        int offset = 2;
+        while (offset + 4 <= data.size()) {
+            if ((data.byteAt(offset) & 0xff) != 0xff) {
+                return null;
+            }
+
+            final int marker = data.byteAt(offset + 1) & 0xff;
+            if (marker == 0xff) {
+                offset++;
+                continue;
+            }
+
+            if (marker == 0x01 || marker >= 0xd0 && marker <= 0xd8) {
+                offset += 2;
+                continue;
+            }
+
+            if (marker == 0xd9 || marker == 0xda) {
+                return null;
+            }
+
+            if (marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+                if (offset + 9 > data.size()) {
+                    return null;
+                }
+                return new Size(getUnsignedShort(data, offset + 7), getUnsignedShort(data, offset + 5));
+            }
+
+            offset += 2 + getUnsignedShort(data, offset + 2);
+        }
+        return null;
+    }
+
+    private static int getUnsignedShort(@NonNull final ByteString data, final int offset) {
+        return (data.byteAt(offset) & 0xff) << 8 | data.byteAt(offset + 1) & 0xff;
+    }
+
+    private static boolean isTileCovered(@NonNull final ScreenTile tile, @NonNull final List<ScreenTile> newTiles,
+        @NonNull final List<Rect> newTileBounds) {
+        final Rect bounds = getTileBounds(tile);
+        if (bounds == null) {
+            return newTiles.stream()
+                .anyMatch(newTile -> newTile.getLeft() == tile.getLeft() && newTile.getTop() == tile.getTop());
+        }
+        return newTileBounds.stream().anyMatch(newBounds -> newBounds.contains(bounds));
+    }
+}
@@ -0,0 +1,66 @@
+package com.obby.android.localscreenshare.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class FrameRateGovernorTest {
+    private static final long NANOS_PER_SECOND = Duration.ofSeconds(1L).toNanos();
+
+    private final FrameRateGovernor mGovernor = new FrameRateGovernor();
+
+    @Test
+    public void changedFramesKeepMaxFrameRate() {
+        mGovernor.update(true);
+        assertFalse(mGovernor.isThrottled());
+        assertEquals((long) (NANOS_PER_SECOND / 30f), mGovernor.getFrameInterval(30));
+    }
+
+    @Test
+    public void staticFramesDecayToMinFrameRate() {
+        mGovernor.update(false);
+        assertTrue(mGovernor.isThrottled());
+        assertEquals((long) (NANOS_PER_SECOND / 24f), mGovernor.getFrameInterval(30));
+
+        for (int i = 0; i < 20; i++) {
+            mGovernor.update(false);
+        }
+        assertEquals(NANOS_PER_SECOND / 2, mGovernor.getFrameInterval(30));
+        assertEquals(NANOS_PER_SECOND, mGovernor.getFrameInterval(1));
+    }
+
+    @Test
+    public void changeRestoresMaxFrameRate() {
+        for (int i = 0; i < 20; i++) {
+            mGovernor.update(false);
+        }
+        mGovernor.update(true);
+        assertFalse(mGovernor.isThrottled());
+        assertEquals((long) (NANOS_PER_SECOND / 30f), mGovernor.getFrameInterval(30));
+
+        mGovernor.update(false);
+        mGovernor.reset();
+        assertFalse(mGovernor.isThrottled());
+    }
+
+    @Test
+    public void collectReportsFrameRate() {
+        for (int i = 0; i < 10; i++) {
+            mGovernor.update(i % 2 == 0);
+        }
+        SystemClock.sleep(2000L);
+        assertEquals(5f, mGovernor.collect(), 0.01f);
+
+        SystemClock.sleep(1000L);
+        assertEquals(0f, mGovernor.collect(), 0.01f);
+    }
+}
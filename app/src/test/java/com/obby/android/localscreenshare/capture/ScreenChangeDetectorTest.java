@@ -0,0 +1,103 @@
+package com.obby.android.localscreenshare.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenChangeDetectorTest {
+    private static final int WIDTH = 300;
+
+    private static final int HEIGHT = 200;
+
+    private static final int ROW_STRIDE = 320;
+
+    private final ScreenChangeDetector mDetector = new ScreenChangeDetector();
+
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(ROW_STRIDE * HEIGHT * Integer.BYTES);
+
+    @Test
+    public void firstFrameHasNoBaseline() {
+        assertNull(detect());
+    }
+
+    @Test
+    public void unchangedFrameHasNoDirtyTiles() {
+        detect();
+        assertTrue(detect().isEmpty());
+    }
+
+    @Test
+    public void changedPixelMarksItsTile() {
+        detect();
+        setPixel(130, 5, 0xff0000ff);
+        assertEquals(List.of(new Rect(128, 0, 256, 128)), detect());
+        assertTrue(detect().isEmpty());
+    }
+
+    @Test
+    public void edgeTileIsClippedToFrame() {
+        detect();
+        setPixel(WIDTH - 1, HEIGHT - 1, 0xff00ff00);
+        assertEquals(List.of(new Rect(256, 128, WIDTH, HEIGHT)), detect());
+    }
+
+    @Test
+    public void rowPaddingIsIgnored() {
+        detect();
+        setPixel(WIDTH + 4, 10, 0xffffffff);
+        assertTrue(detect().isEmpty());
+    }
+
+    @Test
+    public void tooManyDirtyTilesRequestKeyFrame() {
+        detect();
+        setPixel(0, 0, 1);
+        assertEquals(1, detect().size());
+        setPixel(128, 0, 1);
+        assertEquals(1, detect().size());
+        setPixel(256, 0, 1);
+        assertNull(detect());
+        setPixel(0, 128, 1);
+        assertEquals(List.of(new Rect(0, 128, 128, HEIGHT)), detect());
+    }
+
+    @Test
+    public void sampledCheckSeesChangedSamplePixels() {
+        assertTrue(mDetector.isChanged(mBuffer, ROW_STRIDE, WIDTH, HEIGHT));
+        detect();
+        assertFalse(mDetector.isChanged(mBuffer, ROW_STRIDE, WIDTH, HEIGHT));
+
+        setPixel(5, 5, 0xff0000ff);
+        assertFalse(mDetector.isChanged(mBuffer, ROW_STRIDE, WIDTH, HEIGHT));
+        setPixel(4, 4, 0xff0000ff);
+        assertTrue(mDetector.isChanged(mBuffer, ROW_STRIDE, WIDTH, HEIGHT));
+        assertTrue(mDetector.isChanged(mBuffer, ROW_STRIDE, WIDTH, HEIGHT - 1));
+    }
+
+    @Test
+    public void sizeChangeAndResetDropBaseline() {
+        detect();
+        assertNull(mDetector.detect(mBuffer, ROW_STRIDE, WIDTH, HEIGHT - 1));
+        mDetector.reset();
+        assertNull(detect());
+    }
+
+    private List<Rect> detect() {
+        return mDetector.detect(mBuffer, ROW_STRIDE, WIDTH, HEIGHT);
+    }
+
+    private void setPixel(final int x, final int y, final int color) {
+        mBuffer.putInt((y * ROW_STRIDE + x) * Integer.BYTES, color);
+    }
+}
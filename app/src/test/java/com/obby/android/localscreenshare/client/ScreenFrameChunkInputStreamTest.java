@@ -0,0 +1,129 @@
+package com.obby.android.localscreenshare.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ScreenFrameChunkInputStreamTest {
+    private final ScreenFrameChunkInputStream mStream = new ScreenFrameChunkInputStream();
+
+    @Test
+    public void readsChunksInOrder() throws IOException {
+        mStream.write(ByteString.copyFromUtf8("abc"));
+        mStream.write(ByteString.EMPTY);
+        mStream.write(ByteString.copyFromUtf8("de"));
+        mStream.finish();
+
+        final byte[] buffer = new byte[8];
+        assertEquals(2, mStream.read(buffer, 0, 2));
+        assertEquals(1, mStream.available());
+        assertEquals(1, mStream.read(buffer, 2, 6));
+        assertEquals(2, mStream.read(buffer, 3, 5));
+        assertArrayEquals("abcde".getBytes(), Arrays.copyOf(buffer, 5));
+        assertEquals(-1, mStream.read(buffer, 0, 8));
+        assertEquals(-1, mStream.read());
+    }
+
+    @Test
+    public void readsSingleBytes() throws IOException {
+        mStream.write(ByteString.copyFrom(new byte[]{(byte) 0xff, 1}));
+        mStream.finish();
+
+        assertEquals(0xff, mStream.read());
+        assertEquals(1, mStream.read());
+        assertEquals(-1, mStream.read());
+        assertEquals(0, mStream.available());
+    }
+
+    @Test
+    public void readWaitsForChunk() throws Exception {
+        final CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mStream.read();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTimesOut(result);
+
+        mStream.write(ByteString.copyFrom(new byte[]{42}));
+
+        assertEquals(42, (int) result.get(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void finishWakesReader() throws Exception {
+        final CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mStream.read(new byte[4], 0, 4);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTimesOut(result);
+
+        mStream.finish();
+
+        assertEquals(-1, (int) result.get(5L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void abortFailsPendingAndBufferedReads() throws Exception {
+        final CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mStream.read();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTimesOut(result);
+
+        mStream.abort();
+
+        final ExecutionException error =
+            assertThrows(ExecutionException.class, () -> result.get(5L, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getCause() instanceof IOException);
+
+        mStream.write(ByteString.copyFromUtf8("late"));
+        assertThrows(IOException.class, mStream::read);
+    }
+
+    @Test
+    public void interruptedReadThrows() throws InterruptedException {
+        final Throwable[] error = new Throwable[1];
+        final Thread thread = new Thread(() -> {
+            try {
+                mStream.read();
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        thread.start();
+        thread.interrupt();
+        thread.join(5000L);
+
+        assertTrue(error[0] instanceof InterruptedIOException);
+    }
+
+    @Test
+    public void zeroLengthReadReturnsImmediately() throws IOException {
+        assertEquals(0, mStream.read(new byte[4], 0, 0));
+    }
+
+    private static void assertTimesOut(final CompletableFuture<Integer> result) {
+        assertThrows(TimeoutException.class, () -> result.get(100L, TimeUnit.MILLISECONDS));
+    }
+}
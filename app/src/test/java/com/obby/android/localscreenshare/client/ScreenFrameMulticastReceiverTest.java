@@ -0,0 +1,157 @@
+package com.obby.android.localscreenshare.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+import com.obby.android.localscreenshare.support.Constants;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.grpc.stub.StreamObserver;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameMulticastReceiverTest {
+    private static final int PAYLOAD_SIZE = Constants.MULTICAST_PACKET_SIZE - Constants.MULTICAST_PACKET_HEADER_SIZE;
+
+    private final List<ScreenFrame> mFrames = new ArrayList<>();
+
+    private final ScreenFrameMulticastReceiver mReceiver = new ScreenFrameMulticastReceiver(
+        new InetSocketAddress(5000), new StreamObserver<ScreenFrame>() {
+            @Override
+            public void onNext(final ScreenFrame frame) {
+                mFrames.add(frame);
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        }, size -> {
+        });
+
+    @Test
+    public void packetsInOrderAreReassembled() {
+        final ScreenFrame frame = createKeyFrame(1L);
+        final List<ByteBuffer> packets = packetize(0, frame);
+        assertTrue(packets.size() > 2);
+
+        packets.forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(frame), mFrames);
+    }
+
+    @Test
+    public void reorderedPacketsAreReassembled() {
+        final ScreenFrame frame = createKeyFrame(1L);
+        final List<ByteBuffer> packets = packetize(0, frame);
+        Collections.reverse(packets);
+
+        packets.forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(frame), mFrames);
+    }
+
+    @Test
+    public void duplicatePacketsAreIgnored() {
+        final ScreenFrame frame = createKeyFrame(1L);
+        final List<ByteBuffer> packets = packetize(0, frame);
+
+        mReceiver.onPacketReceived(packets.get(0).duplicate());
+        packets.forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(frame), mFrames);
+    }
+
+    @Test
+    public void missingPacketDropsFramesUntilNextKeyFrame() {
+        final List<ByteBuffer> packets = packetize(0, createKeyFrame(1L));
+        packets.remove(1);
+        packets.forEach(mReceiver::onPacketReceived);
+        assertTrue(mFrames.isEmpty());
+
+        packetize(1, createDeltaFrame(2L)).forEach(mReceiver::onPacketReceived);
+        assertTrue(mFrames.isEmpty());
+
+        final ScreenFrame keyFrame = createKeyFrame(3L);
+        packetize(2, keyFrame).forEach(mReceiver::onPacketReceived);
+        final ScreenFrame deltaFrame = createDeltaFrame(4L);
+        packetize(3, deltaFrame).forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(keyFrame, deltaFrame), mFrames);
+    }
+
+    @Test
+    public void frameIdGapStopsDeltaFrames() {
+        final ScreenFrame keyFrame = createKeyFrame(1L);
+        packetize(0, keyFrame).forEach(mReceiver::onPacketReceived);
+        packetize(2, createDeltaFrame(3L)).forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(keyFrame), mFrames);
+    }
+
+    @Test
+    public void frameIdChangeMidFrameAbandonsOlderFrame() {
+        final List<ByteBuffer> oldPackets = packetize(0, createKeyFrame(1L));
+        mReceiver.onPacketReceived(oldPackets.get(0));
+
+        final ScreenFrame newFrame = createKeyFrame(2L);
+        final List<ByteBuffer> newPackets = packetize(1, newFrame);
+        mReceiver.onPacketReceived(newPackets.get(0));
+        mReceiver.onPacketReceived(oldPackets.get(1));
+        newPackets.subList(1, newPackets.size()).forEach(mReceiver::onPacketReceived);
+        oldPackets.subList(2, oldPackets.size()).forEach(mReceiver::onPacketReceived);
+
+        assertEquals(List.of(newFrame), mFrames);
+    }
+
+    private static ScreenFrame createKeyFrame(final long timestamp) {
+        final byte[] data = new byte[PAYLOAD_SIZE * 2 + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i + timestamp);
+        }
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(ByteString.copyFrom(data))
+            .setKeyFrame(true)
+            .build();
+    }
+
+    private static ScreenFrame createDeltaFrame(final long timestamp) {
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .addTiles(ScreenTile.newBuilder().setLeft(16).setTop(32).setData(ByteString.copyFromUtf8("tile")))
+            .build();
+    }
+
+    private static List<ByteBuffer> packetize(final int frameId, final ScreenFrame frame) {
+        final byte[] data = frame.toByteArray();
+        final int packetCount = Math.max(1, (data.length + PAYLOAD_SIZE - 1) / PAYLOAD_SIZE);
+        final List<ByteBuffer> packets = new ArrayList<>();
+        for (int i = 0; i < packetCount; i++) {
+            final int offset = i * PAYLOAD_SIZE;
+            final int length = Math.min(PAYLOAD_SIZE, data.length - offset);
+            final ByteBuffer packet = ByteBuffer.allocate(Constants.MULTICAST_PACKET_HEADER_SIZE + length);
+            packet.putInt(frameId);
+            packet.putShort((short) i);
+            packet.putShort((short) packetCount);
+            packet.put(data, offset, length);
+            packet.flip();
+            packets.add(packet);
+        }
+        return packets;
+    }
+}
@@ -0,0 +1,148 @@
+package com.obby.android.localscreenshare.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.grpc.stub.StreamObserver;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameSocketReceiverTest {
+    private final BlockingQueue<ScreenFrame> mFrames = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<Throwable> mErrors = new LinkedBlockingQueue<>();
+
+    private final AtomicLong mInboundDataSize = new AtomicLong();
+
+    private ServerSocket mServerSocket;
+
+    private ScreenFrameSocketReceiver mReceiver;
+
+    private Socket mSocket;
+
+    private OutputStream mOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        mServerSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        mReceiver = new ScreenFrameSocketReceiver(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), mServerSocket.getLocalPort()),
+            new StreamObserver<ScreenFrame>() {
+                @Override
+                public void onNext(final ScreenFrame frame) {
+                    mFrames.add(frame);
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    mErrors.add(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            }, mInboundDataSize::addAndGet);
+        mReceiver.start();
+
+        mSocket = mServerSocket.accept();
+        mSocket.setTcpNoDelay(true);
+        mOutput = mSocket.getOutputStream();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mReceiver.stop();
+        mSocket.close();
+        mServerSocket.close();
+    }
+
+    @Test
+    public void frameSplitAcrossWritesIsReassembled() throws IOException, InterruptedException {
+        final ScreenFrame frame = createFrame(1L, 64 * 1024);
+        final byte[] data = encode(frame);
+
+        final int[] splits = {2, 3, 5, 1000, data.length / 2};
+        int offset = 0;
+        for (final int split : splits) {
+            mOutput.write(data, offset, split - offset);
+            mOutput.flush();
+            Thread.sleep(20L);
+            offset = split;
+        }
+        mOutput.write(data, offset, data.length - offset);
+        mOutput.flush();
+
+        assertEquals(frame, mFrames.poll(5L, TimeUnit.SECONDS));
+        assertEquals(data.length, mInboundDataSize.get());
+    }
+
+    @Test
+    public void framesCoalescedInOneWriteAreSeparated() throws IOException, InterruptedException {
+        final ScreenFrame firstFrame = createFrame(1L, 100);
+        final ScreenFrame emptyFrame = ScreenFrame.getDefaultInstance();
+        final ScreenFrame lastFrame = createFrame(3L, 300);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(encode(firstFrame));
+        output.write(encode(emptyFrame));
+        output.write(encode(lastFrame));
+        mOutput.write(output.toByteArray());
+        mOutput.flush();
+
+        assertEquals(firstFrame, mFrames.poll(5L, TimeUnit.SECONDS));
+        assertEquals(emptyFrame, mFrames.poll(5L, TimeUnit.SECONDS));
+        assertEquals(lastFrame, mFrames.poll(5L, TimeUnit.SECONDS));
+        assertArrayEquals(new Object[0], mErrors.toArray());
+    }
+
+    @Test
+    public void invalidSizeFailsStream() throws IOException, InterruptedException {
+        new DataOutputStream(mOutput).writeInt(-1);
+        mOutput.flush();
+
+        assertTrue(mErrors.poll(5L, TimeUnit.SECONDS) instanceof IOException);
+        assertTrue(mFrames.isEmpty());
+    }
+
+    private static byte[] encode(final ScreenFrame frame) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(frame.getSerializedSize());
+        frame.writeTo(dataOutput);
+        dataOutput.flush();
+        return output.toByteArray();
+    }
+
+    private static ScreenFrame createFrame(final long timestamp, final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + timestamp);
+        }
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(ByteString.copyFrom(data))
+            .setKeyFrame(true)
+            .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertTrue;
+
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.grpc.stub.ServerCallStreamObserver;
+
+class FakeServerCallStreamObserver extends ServerCallStreamObserver<ScreenFrame> {
+    static final long TIMEOUT_MS = 5000L;
+
+    volatile boolean mIsReady = true;
+
+    volatile long mSendDelayMs;
+
+    volatile Runnable mOnReadyHandler;
+
+    volatile CountDownLatch mSendLatch = new CountDownLatch(0);
+
+    final List<ScreenFrame> mFrames = new CopyOnWriteArrayList<>();
+
+    final CountDownLatch mSendStartedLatch = new CountDownLatch(1);
+
+    private final Semaphore mSentFrames = new Semaphore(0);
+
+    void blockSends() {
+        mSendLatch = new CountDownLatch(1);
+    }
+
+    void awaitFrames(final int count) throws InterruptedException {
+        assertTrue(mSentFrames.tryAcquire(count, TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    List<Long> getTimestamps() {
+        return mFrames.stream().map(ScreenFrame::getTimestamp).collect(Collectors.toList());
+    }
+
+    @Override
+    public void onNext(ScreenFrame value) {
+        mSendStartedLatch.countDown();
+        try {
+            mSendLatch.await();
+            if (mSendDelayMs > 0L) {
+                Thread.sleep(mSendDelayMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mFrames.add(value);
+        mSentFrames.release();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+    }
+
+    @Override
+    public void setOnCloseHandler(Runnable onCloseHandler) {
+    }
+
+    @Override
+    public void setCompression(String compression) {
+    }
+
+    @Override
+    public boolean isReady() {
+        return mIsReady;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        mOnReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+    }
+
+    @Override
+    public void request(int count) {
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+    }
+}
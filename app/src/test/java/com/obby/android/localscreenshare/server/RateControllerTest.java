@@ -0,0 +1,126 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+public class RateControllerTest {
+    private static final long UPDATE_INTERVAL_NS = Duration.ofSeconds(1L).toNanos();
+
+    private final RateController mRateController = new RateController(80);
+
+    private long mTimestamp = UPDATE_INTERVAL_NS;
+
+    @Before
+    public void setUp() {
+        mRateController.update(0f, false, mTimestamp);
+    }
+
+    @Test
+    public void congestionLowersQualityBeforeScale() {
+        updateCongested(1);
+        assertEquals(64, mRateController.getQuality());
+        assertEquals(100, mRateController.getScale());
+
+        updateCongested(4);
+        assertEquals(30, mRateController.getQuality());
+        assertEquals(100, mRateController.getScale());
+
+        updateCongested(3);
+        assertEquals(30, mRateController.getQuality());
+        assertEquals(90, mRateController.getScale());
+    }
+
+    @Test
+    public void stallWithoutSupersededFramesIsNotCongestion() {
+        mTimestamp += UPDATE_INTERVAL_NS;
+        mRateController.update(0.05f, true, mTimestamp);
+        assertEquals(80, mRateController.getQuality());
+    }
+
+    @Test
+    public void scaleChangesWaitForDwellTime() {
+        updateCongested(5);
+        updateCongested(3);
+        assertEquals(90, mRateController.getScale());
+
+        updateCongested(9);
+        assertEquals(90, mRateController.getScale());
+
+        updateCongested(1);
+        assertEquals(80, mRateController.getScale());
+    }
+
+    @Test
+    public void scaleRecoversAfterSustainedClearUpdates() {
+        updateCongested(8);
+        assertEquals(90, mRateController.getScale());
+
+        updateClear(9);
+        assertEquals(90, mRateController.getScale());
+
+        updateClear(1);
+        assertEquals(100, mRateController.getScale());
+        assertEquals(30, mRateController.getQuality());
+
+        updateClear(1);
+        assertEquals(35, mRateController.getQuality());
+    }
+
+    @Test
+    public void congestionRestartsScaleRecovery() {
+        updateCongested(8);
+        updateClear(9);
+        updateCongested(1);
+        updateClear(4);
+        assertEquals(90, mRateController.getScale());
+
+        updateClear(1);
+        assertEquals(100, mRateController.getScale());
+    }
+
+    @Test
+    public void qualityProbesBelowMeasuredCapacity() {
+        mRateController.addOutboundDataSize(100_000L);
+        updateCongested(1);
+        assertEquals(64, mRateController.getQuality());
+
+        mRateController.addOutboundDataSize(100_000L);
+        updateClear(1);
+        assertEquals(64, mRateController.getQuality());
+
+        mRateController.addOutboundDataSize(50_000L);
+        updateClear(1);
+        assertEquals(69, mRateController.getQuality());
+    }
+
+    @Test
+    public void maxQualityClampsQuality() {
+        mRateController.setMaxQuality(50);
+        assertEquals(50, mRateController.getQuality());
+
+        updateClear(1);
+        assertEquals(50, mRateController.getQuality());
+
+        mRateController.setMaxQuality(90);
+        updateClear(1);
+        assertEquals(55, mRateController.getQuality());
+    }
+
+    private void updateCongested(final int count) {
+        for (int i = 0; i < count; i++) {
+            mTimestamp += UPDATE_INTERVAL_NS;
+            mRateController.update(0.5f, true, mTimestamp);
+        }
+    }
+
+    private void updateClear(final int count) {
+        for (int i = 0; i < count; i++) {
+            mTimestamp += UPDATE_INTERVAL_NS;
+            mRateController.update(0f, false, mTimestamp);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import com.obby.android.localscreenshare.support.Constants;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameFlowControllerTest {
+    private static final int KB = 1024;
+
+    private static final int MB = 1024 * KB;
+
+    @Test
+    public void initialWindowDependsOnMode() {
+        assertEquals(Constants.GRPC_FLOW_CONTROL_WINDOW,
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_AUTO).getWindowSize());
+        assertEquals(Constants.GRPC_MAX_FLOW_CONTROL_WINDOW,
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_HIGH_THROUGHPUT).getWindowSize());
+    }
+
+    @Test
+    public void windowStaysOpenUntilFirstAck() {
+        final ScreenFrameFlowController controller =
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_LOW_LATENCY);
+        controller.onFrameSent(1L, 64L * MB);
+
+        assertTrue(controller.isWindowOpen());
+    }
+
+    @Test
+    public void windowTracksBandwidthDelayProduct() {
+        assertEquals(MB, getWindowSize(Constants.FLOW_CONTROL_MODE_LOW_LATENCY, MB, 100L));
+        assertEquals(2 * MB, getWindowSize(Constants.FLOW_CONTROL_MODE_AUTO, MB, 100L));
+        assertEquals(4 * MB, getWindowSize(Constants.FLOW_CONTROL_MODE_HIGH_THROUGHPUT, MB, 100L));
+    }
+
+    @Test
+    public void windowIsClamped() {
+        assertEquals(Constants.GRPC_MIN_FLOW_CONTROL_WINDOW,
+            getWindowSize(Constants.FLOW_CONTROL_MODE_AUTO, KB, 1000L));
+        assertEquals(Constants.GRPC_MAX_FLOW_CONTROL_WINDOW,
+            getWindowSize(Constants.FLOW_CONTROL_MODE_AUTO, 100 * MB, 100L));
+    }
+
+    @Test
+    public void ackIsCumulative() {
+        final AtomicInteger openedCount = new AtomicInteger();
+        final ScreenFrameFlowController controller =
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_LOW_LATENCY);
+        controller.setOnWindowOpenedListener(openedCount::incrementAndGet);
+        controller.onFrameSent(1L, 512L * KB);
+        controller.onFrameSent(2L, 512L * KB);
+        controller.onFrameSent(3L, 512L * KB);
+        SystemClock.sleep(100L);
+
+        controller.onFrameAcked(2L);
+        assertEquals(MB, controller.getWindowSize());
+        assertTrue(controller.isWindowOpen());
+
+        controller.onFrameSent(4L, 600L * KB);
+        assertFalse(controller.isWindowOpen());
+
+        controller.onFrameAcked(3L);
+        assertEquals(3 * MB / 2, controller.getWindowSize());
+        assertTrue(controller.isWindowOpen());
+        assertEquals(1, openedCount.get());
+    }
+
+    @Test
+    public void staleAckIsIgnored() {
+        final ScreenFrameFlowController controller =
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_LOW_LATENCY);
+        controller.onFrameSent(1L, MB);
+        SystemClock.sleep(100L);
+        controller.onFrameAcked(1L);
+        controller.onFrameSent(2L, 2L * MB);
+        SystemClock.sleep(100L);
+
+        controller.onFrameAcked(1L);
+
+        assertEquals(MB, controller.getWindowSize());
+        assertFalse(controller.isWindowOpen());
+    }
+
+    @Test
+    public void disableOpensWindow() {
+        final AtomicInteger openedCount = new AtomicInteger();
+        final ScreenFrameFlowController controller =
+            new ScreenFrameFlowController(Constants.FLOW_CONTROL_MODE_LOW_LATENCY);
+        controller.setOnWindowOpenedListener(openedCount::incrementAndGet);
+        controller.onFrameSent(1L, MB);
+        SystemClock.sleep(100L);
+        controller.onFrameAcked(1L);
+        controller.onFrameSent(2L, 2L * MB);
+        assertFalse(controller.isWindowOpen());
+
+        controller.disable();
+
+        assertTrue(controller.isWindowOpen());
+        assertEquals(1, openedCount.get());
+        controller.onFrameSent(3L, 64L * MB);
+        assertTrue(controller.isWindowOpen());
+    }
+
+    private static int getWindowSize(final int mode, final long size, final long roundTripTimeMs) {
+        final ScreenFrameFlowController controller = new ScreenFrameFlowController(mode);
+        controller.onFrameSent(1L, size);
+        SystemClock.sleep(roundTripTimeMs);
+        controller.onFrameAcked(1L);
+        return controller.getWindowSize();
+    }
+}
@@ -0,0 +1,65 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.grpc.Drainable;
+
+public class ScreenFrameMarshallerTest {
+    private final ScreenFrameMarshaller mMarshaller = new ScreenFrameMarshaller();
+
+    private final ScreenFrame mFrame = ScreenFrame.newBuilder()
+        .setTimestamp(1L)
+        .setData(ByteString.copyFromUtf8("frame"))
+        .build();
+
+    @Test
+    public void retainedFrameDrainsSerializedBytes() throws IOException {
+        ScreenFrameBufferPool.get().retain(mFrame);
+        try {
+            final InputStream stream = mMarshaller.stream(mFrame);
+            assertEquals(mFrame.getSerializedSize(), stream.available());
+            assertTrue(stream instanceof Drainable);
+
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            assertEquals(mFrame.getSerializedSize(), ((Drainable) stream).drainTo(output));
+            assertArrayEquals(mFrame.toByteArray(), output.toByteArray());
+            assertEquals(0, stream.available());
+        } finally {
+            ScreenFrameBufferPool.get().release(mFrame);
+        }
+    }
+
+    @Test
+    public void retainedFrameReadsSerializedBytes() {
+        ScreenFrameBufferPool.get().retain(mFrame);
+        try {
+            assertEquals(mFrame, mMarshaller.parse(mMarshaller.stream(mFrame)));
+        } finally {
+            ScreenFrameBufferPool.get().release(mFrame);
+        }
+    }
+
+    @Test
+    public void unretainedFrameAndChunksRoundTrip() {
+        final ScreenFrame chunk = mFrame.toBuilder().setDataSize(10).build();
+        ScreenFrameBufferPool.get().retain(chunk);
+        try {
+            assertEquals(mFrame, mMarshaller.parse(mMarshaller.stream(mFrame)));
+            assertEquals(chunk, mMarshaller.parse(mMarshaller.stream(chunk)));
+        } finally {
+            ScreenFrameBufferPool.get().release(chunk);
+        }
+    }
+}
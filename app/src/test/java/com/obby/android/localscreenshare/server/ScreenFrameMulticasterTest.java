@@ -0,0 +1,107 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.support.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameMulticasterTest {
+    private static final int PAYLOAD_SIZE = Constants.MULTICAST_PACKET_SIZE - Constants.MULTICAST_PACKET_HEADER_SIZE;
+
+    private final List<ByteBuffer> mPackets = new ArrayList<>();
+
+    private ScreenFrameMulticaster mMulticaster;
+
+    @Before
+    public void setUp() throws IOException {
+        mMulticaster = new ScreenFrameMulticaster(InetAddress.getByName("239.255.0.1"), 5000, new MulticastSocket() {
+            @Override
+            public void send(final DatagramPacket packet) {
+                mPackets.add(ByteBuffer.wrap(Arrays.copyOfRange(packet.getData(), packet.getOffset(),
+                    packet.getOffset() + packet.getLength())));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mMulticaster.release();
+    }
+
+    @Test
+    public void frameIsSplitIntoIndexedPackets() throws IOException {
+        final byte[] data = createData(PAYLOAD_SIZE * 2 + 10);
+        mMulticaster.sendFrame(ByteString.copyFrom(data));
+
+        assertEquals(3, mPackets.size());
+        final ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+        for (int i = 0; i < mPackets.size(); i++) {
+            final ByteBuffer packet = mPackets.get(i);
+            assertEquals(0, packet.getInt());
+            assertEquals(i, packet.getShort());
+            assertEquals(3, packet.getShort());
+            assertEquals(i < 2 ? PAYLOAD_SIZE : 10, packet.remaining());
+            payloads.write(packet.array(), packet.position(), packet.remaining());
+        }
+        assertArrayEquals(data, payloads.toByteArray());
+    }
+
+    @Test
+    public void exactMultipleFillsEveryPacket() throws IOException {
+        mMulticaster.sendFrame(ByteString.copyFrom(createData(PAYLOAD_SIZE * 2)));
+
+        assertEquals(2, mPackets.size());
+        for (final ByteBuffer packet : mPackets) {
+            assertEquals(Constants.MULTICAST_PACKET_SIZE, packet.remaining());
+        }
+    }
+
+    @Test
+    public void emptyFrameIsSentAsSinglePacket() throws IOException {
+        mMulticaster.sendFrame(ByteString.EMPTY);
+
+        assertEquals(1, mPackets.size());
+        final ByteBuffer packet = mPackets.get(0);
+        assertEquals(0, packet.getInt());
+        assertEquals(0, packet.getShort());
+        assertEquals(1, packet.getShort());
+        assertEquals(0, packet.remaining());
+    }
+
+    @Test
+    public void frameIdAdvancesPerFrame() throws IOException {
+        mMulticaster.sendFrame(ByteString.copyFrom(createData(PAYLOAD_SIZE + 1)));
+        mMulticaster.sendFrame(ByteString.copyFrom(createData(1)));
+
+        assertEquals(3, mPackets.size());
+        assertEquals(0, mPackets.get(0).getInt());
+        assertEquals(0, mPackets.get(1).getInt());
+        assertEquals(1, mPackets.get(2).getInt());
+    }
+
+    private static byte[] createData(final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,156 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameSocketTransportTest {
+    private static final int LARGE_FRAME_SIZE = 4 * 1024 * 1024;
+
+    private static final int RECEIVE_BUFFER_SIZE = 4 * 1024;
+
+    private static final int READ_SIZE = 1000;
+
+    private final CountDownLatch mOpened = new CountDownLatch(1);
+
+    private final CountDownLatch mStalled = new CountDownLatch(1);
+
+    private final CountDownLatch mWriteStarted = new CountDownLatch(1);
+
+    private final AtomicInteger mDroppedFrameCount = new AtomicInteger();
+
+    private ScreenFrameSocketTransport mTransport;
+
+    private Socket mSocket;
+
+    private DataInputStream mInput;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        mTransport = new ScreenFrameSocketTransport(new ScreenFrameTransport.Listener() {
+            @Override
+            public void onConnectionOpened(final InetSocketAddress remoteAddress) {
+                mOpened.countDown();
+            }
+
+            @Override
+            public void onConnectionClosed(final InetSocketAddress remoteAddress) {
+            }
+
+            @Override
+            public void onDataSent(final InetSocketAddress remoteAddress, final long size) {
+                mWriteStarted.countDown();
+            }
+
+            @Override
+            public void onFrameSent(final InetSocketAddress remoteAddress) {
+            }
+
+            @Override
+            public void onFrameDropped(final InetSocketAddress remoteAddress) {
+                mDroppedFrameCount.incrementAndGet();
+            }
+
+            @Override
+            public void onStalled(final InetSocketAddress remoteAddress, final long duration) {
+                mStalled.countDown();
+            }
+        });
+
+        mSocket = new Socket();
+        mSocket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        mSocket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), mTransport.getPort()));
+        mInput = new DataInputStream(mSocket.getInputStream());
+        assertTrue(mOpened.await(5L, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mSocket.close();
+        mTransport.release();
+    }
+
+    @Test
+    public void largeFrameSurvivesPartialWrites() throws IOException, InterruptedException {
+        final ScreenFrame frame = createKeyFrame(1L, LARGE_FRAME_SIZE);
+        post(frame);
+        assertTrue(mWriteStarted.await(5L, TimeUnit.SECONDS));
+
+        assertEquals(frame, readFrame());
+        assertTrue(mStalled.await(5L, TimeUnit.SECONDS));
+
+        final ScreenFrame deltaFrame = createDeltaFrame(2L);
+        post(deltaFrame);
+        assertEquals(deltaFrame, readFrame());
+    }
+
+    @Test
+    public void framesPostedWhileStalledAreCoalesced() throws IOException, InterruptedException {
+        final ScreenFrame frame = createKeyFrame(1L, LARGE_FRAME_SIZE);
+        post(frame);
+        assertTrue(mWriteStarted.await(5L, TimeUnit.SECONDS));
+        post(createKeyFrame(2L, 1024));
+        final ScreenFrame latestFrame = createKeyFrame(3L, 1024);
+        post(latestFrame);
+
+        assertEquals(frame, readFrame());
+        assertEquals(latestFrame, readFrame());
+        assertEquals(1, mDroppedFrameCount.get());
+    }
+
+    private void post(final ScreenFrame frame) {
+        mTransport.postScreenFrames(Map.of(ScreenEncoding.getDefaultInstance(), frame));
+    }
+
+    private ScreenFrame readFrame() throws IOException {
+        final int size = mInput.readInt();
+        final byte[] data = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            final int count = mInput.read(data, offset, Math.min(READ_SIZE, size - offset));
+            assertTrue(count > 0);
+            offset += count;
+        }
+        return ScreenFrame.parseFrom(data);
+    }
+
+    private static ScreenFrame createKeyFrame(final long timestamp, final int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + timestamp);
+        }
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(ByteString.copyFrom(data))
+            .setKeyFrame(true)
+            .build();
+    }
+
+    private static ScreenFrame createDeltaFrame(final long timestamp) {
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .addTiles(ScreenTile.newBuilder().setLeft(16).setTop(32).setData(ByteString.copyFromUtf8("tile")))
+            .build();
+    }
+}
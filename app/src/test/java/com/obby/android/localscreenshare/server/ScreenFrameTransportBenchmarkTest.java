@@ -0,0 +1,267 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamRequest;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamServiceGrpc;
+import com.obby.android.localscreenshare.support.Constants;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import io.grpc.okhttp.OkHttpServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameTransportBenchmarkTest {
+    private static final long FRAME_INTERVAL_NS = Duration.ofMillis(5L).toNanos();
+
+    private static final int FRAME_COUNT = 400;
+
+    private static final int FRAME_SIZE = 256 * 1024;
+
+    private static final long TIMEOUT_MS = 10000L;
+
+    private static final ByteString FRAME_DATA = createFrameData();
+
+    @Test
+    public void socketAndGrpcOverLoopback() throws Exception {
+        runGrpc();
+        runSocket();
+
+        final Result grpcResult = runGrpc();
+        final Result socketResult = runSocket();
+        System.out.println(grpcResult);
+        System.out.println(socketResult);
+        assertTrue(grpcResult.toString(), grpcResult.mFrameCount > 0);
+        assertTrue(socketResult.toString(), socketResult.mFrameCount > 0);
+    }
+
+    private static Result runGrpc() throws Exception {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+        final LssServer.ScreenStreamService service =
+            new LssServer.ScreenStreamService(executor, false, 80, remoteAddress -> null);
+        final Server server = OkHttpServerBuilder.forPort(0, InsecureServerCredentials.create())
+            .flowControlWindow(Constants.GRPC_FLOW_CONTROL_WINDOW)
+            .maxInboundMessageSize(Constants.GRPC_MAX_INBOUND_MESSAGE_SIZE)
+            .addService(service)
+            .build()
+            .start();
+        final ManagedChannel channel = OkHttpChannelBuilder.forAddress(
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(),
+                InsecureChannelCredentials.create())
+            .flowControlWindow(Constants.GRPC_FLOW_CONTROL_WINDOW)
+            .maxInboundMessageSize(Constants.GRPC_MAX_INBOUND_MESSAGE_SIZE)
+            .build();
+        final Recorder recorder = new Recorder();
+        try {
+            service.postScreenFrames(createFrames(System.nanoTime()));
+            ScreenStreamServiceGrpc.newStub(channel).getScreenStream(ScreenStreamRequest.getDefaultInstance(),
+                new StreamObserver<ScreenFrame>() {
+                    @Override
+                    public void onNext(final ScreenFrame frame) {
+                        recorder.onFrameReceived(frame, frame.getSerializedSize());
+                    }
+
+                    @Override
+                    public void onError(final Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+            return recorder.run("grpc", service::postScreenFrames);
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+            service.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result runSocket() throws Exception {
+        final ScreenFrameSocketTransport transport =
+            new ScreenFrameSocketTransport(new ScreenFrameTransport.Listener() {
+                @Override
+                public void onConnectionOpened(final InetSocketAddress remoteAddress) {
+                }
+
+                @Override
+                public void onConnectionClosed(final InetSocketAddress remoteAddress) {
+                }
+
+                @Override
+                public void onDataSent(final InetSocketAddress remoteAddress, final long size) {
+                }
+
+                @Override
+                public void onFrameSent(final InetSocketAddress remoteAddress) {
+                }
+
+                @Override
+                public void onFrameDropped(final InetSocketAddress remoteAddress) {
+                }
+
+                @Override
+                public void onStalled(final InetSocketAddress remoteAddress, final long duration) {
+                }
+            });
+        final Recorder recorder = new Recorder();
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), transport.getPort());
+        final Thread thread = new Thread(() -> {
+            try (DataInputStream input = new DataInputStream(socket.getInputStream())) {
+                while (true) {
+                    final byte[] data = new byte[input.readInt()];
+                    input.readFully(data);
+                    recorder.onFrameReceived(ScreenFrame.parseFrom(data), Integer.BYTES + data.length);
+                }
+            } catch (IOException e) {
+                // ignored
+            }
+        });
+        thread.start();
+        try {
+            transport.postScreenFrames(createFrames(System.nanoTime()));
+            return recorder.run("socket", transport::postScreenFrames);
+        } finally {
+            transport.release();
+            socket.close();
+            thread.join(TIMEOUT_MS);
+        }
+    }
+
+    private static Map<ScreenEncoding, ScreenFrame> createFrames(final long timestamp) {
+        return Map.of(ScreenEncoding.getDefaultInstance(), ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(FRAME_DATA)
+            .setKeyFrame(true)
+            .build());
+    }
+
+    private static ByteString createFrameData() {
+        final byte[] data = new byte[FRAME_SIZE];
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return ByteString.copyFrom(data);
+    }
+
+    private static long getProcessCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+            .getProcessCpuTime();
+    }
+
+    private static class Recorder {
+        private final CountDownLatch mConnectedLatch = new CountDownLatch(1);
+
+        private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+
+        private final long[] mLatencies = new long[FRAME_COUNT];
+
+        private final AtomicLong mByteCount = new AtomicLong();
+
+        private volatile long mFirstTimestamp = Long.MAX_VALUE;
+
+        private volatile long mLastTimestamp = Long.MAX_VALUE;
+
+        private int mFrameCount;
+
+        void onFrameReceived(final ScreenFrame frame, final long size) {
+            final long timestamp = System.nanoTime();
+            mConnectedLatch.countDown();
+            if (frame.getTimestamp() < mFirstTimestamp) {
+                return;
+            }
+
+            mLatencies[mFrameCount++] = timestamp - frame.getTimestamp();
+            mByteCount.addAndGet(size);
+            if (frame.getTimestamp() == mLastTimestamp) {
+                mFinishedLatch.countDown();
+            }
+        }
+
+        Result run(final String name, final Consumer<Map<ScreenEncoding, ScreenFrame>> publisher)
+            throws InterruptedException {
+            assertTrue(name, mConnectedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+            final long startCpuTime = getProcessCpuTime();
+            final long startTimestamp = System.nanoTime();
+            mFirstTimestamp = startTimestamp;
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                final long deadline = startTimestamp + i * FRAME_INTERVAL_NS;
+                for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+                    LockSupport.parkNanos(deadline - now);
+                }
+
+                final Map<ScreenEncoding, ScreenFrame> frames = createFrames(System.nanoTime());
+                if (i == FRAME_COUNT - 1) {
+                    mLastTimestamp = frames.get(ScreenEncoding.getDefaultInstance()).getTimestamp();
+                }
+                publisher.accept(frames);
+            }
+
+            assertTrue(name, mFinishedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            return new Result(name, mFrameCount, mByteCount.get(), System.nanoTime() - startTimestamp,
+                getProcessCpuTime() - startCpuTime, Arrays.copyOf(mLatencies, mFrameCount));
+        }
+    }
+
+    private static class Result {
+        private final String mName;
+
+        private final int mFrameCount;
+
+        private final long mByteCount;
+
+        private final long mElapsedTime;
+
+        private final long mCpuTime;
+
+        private final long[] mLatencies;
+
+        Result(final String name, final int frameCount, final long byteCount, final long elapsedTime,
+            final long cpuTime, final long[] latencies) {
+            mName = name;
+            mFrameCount = frameCount;
+            mByteCount = byteCount;
+            mElapsedTime = elapsedTime;
+            mCpuTime = cpuTime;
+            mLatencies = latencies;
+            Arrays.sort(mLatencies);
+        }
+
+        @Override
+        public String toString() {
+            final long p99Latency = mFrameCount == 0 ? 0L : mLatencies[(int) Math.ceil(mFrameCount * 0.99) - 1];
+            return String.format("%s: %d/%d frames, %.1f MB/s, p99 latency %.2f ms, %.2f ns CPU/byte", mName,
+                mFrameCount, FRAME_COUNT, mByteCount * 1000.0 / mElapsedTime, p99Latency / 1e6,
+                mByteCount == 0L ? 0.0 : (double) mCpuTime / mByteCount);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+import com.obby.android.localscreenshare.support.ScreenFrameBufferPool;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenStreamResponseObserverTest {
+    private static final long TIMEOUT_MS = FakeServerCallStreamObserver.TIMEOUT_MS;
+
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private final FakeServerCallStreamObserver mResponseObserver = new FakeServerCallStreamObserver();
+
+    private final LssServer.ScreenStreamResponseObserver mObserver = new LssServer.ScreenStreamResponseObserver(
+        mResponseObserver, mExecutor, ScreenEncoding.getDefaultInstance(), 0, 0, null);
+
+    @After
+    public void tearDown() {
+        mResponseObserver.mSendLatch.countDown();
+        mExecutor.shutdownNow();
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void postingDoesNotWaitForSlowSend() throws InterruptedException {
+        mResponseObserver.blockSends();
+        mObserver.postScreenFrame(keyFrame(1L));
+        assertTrue(mResponseObserver.mSendStartedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        mObserver.postScreenFrame(keyFrame(2L));
+        mObserver.postScreenFrame(keyFrame(3L));
+        mObserver.postScreenFrame(keyFrame(4L));
+        mResponseObserver.mSendLatch.countDown();
+
+        mResponseObserver.awaitFrames(2);
+        assertEquals(List.of(1L, 4L), mResponseObserver.getTimestamps());
+        assertEquals(4L, mObserver.getAndResetPostedFrameCount());
+        assertEquals(2L, mObserver.getAndResetSupersededFrameCount());
+        assertEquals(0L, mObserver.getAndResetStalledFrameCount());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void framesPostedWhileNotReadyAreCoalesced() throws InterruptedException {
+        mResponseObserver.mIsReady = false;
+        mObserver.postScreenFrame(keyFrame(1L));
+        mObserver.postScreenFrame(deltaFrame(2L, 0));
+        mObserver.postScreenFrame(deltaFrame(3L, 128));
+        assertEquals(3L, mObserver.getAndResetStalledFrameCount());
+        assertEquals(2L, mObserver.getAndResetSupersededFrameCount());
+        assertTrue(mResponseObserver.mFrames.isEmpty());
+
+        mResponseObserver.mIsReady = true;
+        mResponseObserver.mOnReadyHandler.run();
+
+        mResponseObserver.awaitFrames(1);
+        final ScreenFrame frame = mResponseObserver.mFrames.get(0);
+        assertEquals(3L, frame.getTimestamp());
+        assertEquals("key", frame.getData().toStringUtf8());
+        assertEquals(2, frame.getTilesCount());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void olderFramesAreNotResent() throws InterruptedException {
+        mObserver.postScreenFrame(keyFrame(2L));
+        mResponseObserver.awaitFrames(1);
+        mObserver.postScreenFrame(keyFrame(1L));
+        mObserver.postScreenFrame(keyFrame(3L));
+
+        mResponseObserver.awaitFrames(1);
+        assertEquals(List.of(2L, 3L), mResponseObserver.getTimestamps());
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void rejectedRescheduleReleasesPendingFrame() throws InterruptedException {
+        final LssServer.ScreenStreamResponseObserver observer = new LssServer.ScreenStreamResponseObserver(
+            mResponseObserver, mExecutor, ScreenEncoding.getDefaultInstance(), 1, 0, null);
+        SystemClock.sleep(1000L);
+        mResponseObserver.blockSends();
+        observer.postScreenFrame(keyFrame(1L));
+        assertTrue(mResponseObserver.mSendStartedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        final ScreenFrame frame = keyFrame(2L);
+        observer.postScreenFrame(frame);
+        assertNotNull(ScreenFrameBufferPool.get().serialize(frame));
+        mExecutor.shutdown();
+        mResponseObserver.mSendLatch.countDown();
+
+        assertTrue(mExecutor.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(1L), mResponseObserver.getTimestamps());
+        assertNull(ScreenFrameBufferPool.get().serialize(frame));
+    }
+
+    private static ScreenFrame keyFrame(final long timestamp) {
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(ByteString.copyFromUtf8("key"))
+            .build();
+    }
+
+    private static ScreenFrame deltaFrame(final long timestamp, final int left) {
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .addTiles(ScreenTile.newBuilder()
+                .setLeft(left)
+                .setWidth(128)
+                .setHeight(128)
+                .setData(ByteString.copyFromUtf8("tile")))
+            .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.obby.android.localscreenshare.server;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenStreamRequest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.locks.LockSupport;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenStreamServiceLoadTest {
+    private static final long FRAME_INTERVAL_NS = Duration.ofMillis(16L).toNanos();
+
+    private static final int FRAME_COUNT = 60;
+
+    private static final long SEND_DELAY_MS = 40L;
+
+    private static final int NOT_READY_VIEWER_STRIDE = 3;
+
+    private static final int SENDER_THREAD_COUNT = 4;
+
+    @Test
+    public void publishCadenceStaysFlatAsViewersGrow() throws InterruptedException {
+        publish(10);
+
+        for (final int viewerCount : new int[]{1, 10, 50}) {
+            final long[] stats = publish(viewerCount);
+            final long publishTime = stats[0];
+            final long lateness = stats[1];
+            assertTrue(String.format("%d viewers: p99 publish time %d ns", viewerCount, publishTime),
+                publishTime < FRAME_INTERVAL_NS / 4L);
+            assertTrue(String.format("%d viewers: max publish lateness %d ns", viewerCount, lateness),
+                lateness < FRAME_INTERVAL_NS / 2L);
+        }
+    }
+
+    private static long[] publish(final int viewerCount) throws InterruptedException {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(SENDER_THREAD_COUNT);
+        final LssServer.ScreenStreamService service =
+            new LssServer.ScreenStreamService(executor, false, 80, remoteAddress -> null);
+        final List<FakeServerCallStreamObserver> viewers = new ArrayList<>();
+        for (int i = 0; i < viewerCount; i++) {
+            final FakeServerCallStreamObserver viewer = new FakeServerCallStreamObserver();
+            viewer.mIsReady = i % NOT_READY_VIEWER_STRIDE != NOT_READY_VIEWER_STRIDE - 1;
+            viewer.mSendDelayMs = SEND_DELAY_MS;
+            service.getScreenStream(ScreenStreamRequest.getDefaultInstance(), viewer);
+            viewers.add(viewer);
+        }
+
+        final long[] publishTimes = new long[FRAME_COUNT];
+        long maxLateness = 0L;
+        final long startTimestamp = System.nanoTime();
+        try {
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                final Map<ScreenEncoding, ScreenFrame> frames =
+                    Map.of(ScreenEncoding.getDefaultInstance(), keyFrame(i));
+                final long deadline = startTimestamp + i * FRAME_INTERVAL_NS;
+                for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+                    LockSupport.parkNanos(deadline - now);
+                }
+
+                final long timestamp = System.nanoTime();
+                service.postScreenFrames(frames);
+                publishTimes[i] = System.nanoTime() - timestamp;
+                maxLateness = Math.max(maxLateness, timestamp - deadline);
+            }
+
+            for (final FakeServerCallStreamObserver viewer : viewers) {
+                if (viewer.mIsReady) {
+                    viewer.awaitFrames(1);
+                } else {
+                    assertTrue(viewer.mFrames.isEmpty());
+                }
+            }
+        } finally {
+            service.stop();
+            executor.shutdownNow();
+        }
+
+        Arrays.sort(publishTimes);
+        return new long[]{publishTimes[(int) Math.ceil(FRAME_COUNT * 0.99) - 1], maxLateness};
+    }
+
+    private static ScreenFrame keyFrame(final long timestamp) {
+        return ScreenFrame.newBuilder()
+            .setTimestamp(timestamp)
+            .setData(ByteString.copyFrom(new byte[64 * 1024]))
+            .build();
+    }
+}
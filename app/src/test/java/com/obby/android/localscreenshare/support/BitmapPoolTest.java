@@ -0,0 +1,119 @@
+package com.obby.android.localscreenshare.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class BitmapPoolTest {
+    private static final int BITMAP_BYTES = 10 * 10 * 4;
+
+    private final BitmapPool mPool = new BitmapPool(BITMAP_BYTES * 2L);
+
+    @Test
+    public void releasedBitmapIsReused() {
+        final Bitmap bitmap = mPool.acquire(10, 10, Bitmap.Config.ARGB_8888);
+        mPool.release(bitmap);
+
+        assertSame(bitmap, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+        assertNotSame(bitmap, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void bitmapIsReusedOnlyForSameSizeAndConfig() {
+        final Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        mPool.release(bitmap);
+
+        assertNotSame(bitmap, mPool.acquire(10, 10, Bitmap.Config.RGB_565));
+        assertNotSame(bitmap, mPool.acquire(20, 5, Bitmap.Config.ARGB_8888));
+        assertSame(bitmap, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void budgetEvictsLeastRecentlyUsedSize() {
+        final Bitmap square = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final Bitmap wide = Bitmap.createBitmap(20, 5, Bitmap.Config.ARGB_8888);
+        final Bitmap tall = Bitmap.createBitmap(5, 20, Bitmap.Config.ARGB_8888);
+        mPool.release(square);
+        mPool.release(wide);
+        assertSame(square, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+        mPool.release(square);
+
+        mPool.release(tall);
+
+        assertTrue(wide.isRecycled());
+        assertFalse(square.isRecycled());
+        assertFalse(tall.isRecycled());
+        assertSame(square, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+        assertSame(tall, mPool.acquire(5, 20, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void budgetEvictsOldestBitmapOfSameSize() {
+        final Bitmap first = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final Bitmap second = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final Bitmap third = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        mPool.release(first);
+        mPool.release(second);
+        mPool.release(third);
+
+        assertTrue(first.isRecycled());
+        assertSame(third, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+        assertSame(second, mPool.acquire(10, 10, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void unpoolableBitmapsAreRecycled() {
+        final Bitmap large = Bitmap.createBitmap(20, 20, Bitmap.Config.ARGB_8888);
+        final Bitmap immutable = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)
+            .copy(Bitmap.Config.ARGB_8888, false);
+        mPool.release(large);
+        mPool.release(immutable);
+
+        assertTrue(large.isRecycled());
+        assertTrue(immutable.isRecycled());
+    }
+
+    @Test
+    public void trimMemoryShrinksPool() {
+        final Bitmap first = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        final Bitmap second = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        mPool.release(first);
+        mPool.release(second);
+
+        mPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertTrue(first.isRecycled());
+        assertFalse(second.isRecycled());
+
+        mPool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertTrue(second.isRecycled());
+    }
+
+    @Test
+    public void keyPacksSizeAndConfig() {
+        final Set<Long> keys = new HashSet<>();
+        for (final List<Integer> size : List.of(List.of(1, 2), List.of(2, 1), List.of(65535, 65535),
+            List.of(65535, 65534), List.of(65534, 65535))) {
+            for (final Bitmap.Config config : Bitmap.Config.values()) {
+                assertTrue(keys.add(BitmapPool.getKey(size.get(0), size.get(1), config)));
+            }
+        }
+        assertEquals(5 * Bitmap.Config.values().length, keys.size());
+        assertNotEquals(BitmapPool.getKey(1, 0, Bitmap.Config.ARGB_8888),
+            BitmapPool.getKey(0, 1 << 16, Bitmap.Config.ARGB_8888));
+    }
+}
@@ -0,0 +1,108 @@
+package com.obby.android.localscreenshare.support;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ScreenFrameBufferPoolTest {
+    private final ScreenFrameBufferPool mPool = new ScreenFrameBufferPool();
+
+    @Test
+    public void wrapExposesWrittenBytes() throws IOException {
+        final ScreenFrameBufferPool.Buffer buffer = mPool.acquire();
+        final byte[] data = new byte[100 * 1024];
+        data[data.length - 1] = 42;
+        buffer.write(1);
+        buffer.write(data);
+
+        final byte[] expected = new byte[data.length + 1];
+        expected[0] = 1;
+        System.arraycopy(data, 0, expected, 1, data.length);
+        assertArrayEquals(expected, mPool.wrap(buffer).toByteArray());
+    }
+
+    @Test
+    public void bufferIsRecycledAfterLastRelease() throws IOException {
+        final ScreenFrameBufferPool.Buffer buffer = mPool.acquire();
+        buffer.write(new byte[] {1, 2, 3});
+        final ScreenFrame frame = ScreenFrame.newBuilder().setData(mPool.wrap(buffer)).build();
+
+        mPool.retain(frame);
+        mPool.retain(frame);
+        mPool.release(frame);
+        assertNotSame(buffer, mPool.acquire());
+
+        mPool.release(frame);
+        assertSame(buffer, mPool.acquire());
+    }
+
+    @Test
+    public void sharedTilesAreHeldByEveryFrame() throws IOException {
+        final ScreenFrameBufferPool.Buffer sharedBuffer = mPool.acquire();
+        sharedBuffer.write(1);
+        final ScreenFrameBufferPool.Buffer buffer = mPool.acquire();
+        buffer.write(2);
+        final ScreenTile sharedTile = ScreenTile.newBuilder().setData(mPool.wrap(sharedBuffer)).build();
+        final ScreenFrame frame = ScreenFrame.newBuilder().addTiles(sharedTile).build();
+        final ScreenFrame mergedFrame = ScreenFrame.newBuilder()
+            .addTiles(sharedTile)
+            .addTiles(ScreenTile.newBuilder().setLeft(128).setData(mPool.wrap(buffer)))
+            .build();
+
+        mPool.retain(frame);
+        mPool.retain(mergedFrame);
+        mPool.release(frame);
+        final ScreenFrameBufferPool.Buffer newBuffer = mPool.acquire();
+        assertNotSame(sharedBuffer, newBuffer);
+        assertNotSame(buffer, newBuffer);
+
+        mPool.release(mergedFrame);
+        assertSame(buffer, mPool.acquire());
+        assertSame(sharedBuffer, mPool.acquire());
+    }
+
+    @Test
+    public void retainedFrameIsSerializedOnce() throws IOException {
+        final ScreenFrameBufferPool.Buffer buffer = mPool.acquire();
+        buffer.write(new byte[] {1, 2, 3});
+        final ScreenFrame frame = ScreenFrame.newBuilder().setTimestamp(1L).setData(mPool.wrap(buffer)).build();
+        assertNull(mPool.serialize(frame));
+
+        mPool.retain(frame);
+        mPool.retain(frame);
+        final ByteString data = mPool.serialize(frame);
+        assertEquals(frame.toByteString(), data);
+        assertSame(data, mPool.serialize(frame));
+
+        mPool.release(frame);
+        assertSame(data, mPool.serialize(frame));
+
+        mPool.release(frame);
+        assertNull(mPool.serialize(frame));
+        final ScreenFrameBufferPool.Buffer serializedBuffer = mPool.acquire();
+        assertNotSame(buffer, serializedBuffer);
+        assertSame(buffer, mPool.acquire());
+    }
+
+    @Test
+    public void unpooledDataIsIgnored() {
+        final ScreenFrame frame = ScreenFrame.newBuilder().setData(ByteString.copyFromUtf8("data")).build();
+        final ScreenFrameBufferPool.Buffer buffer = mPool.acquire();
+        mPool.recycle(buffer);
+
+        mPool.retain(frame);
+        mPool.release(frame);
+        mPool.release(frame);
+        assertSame(buffer, mPool.acquire());
+    }
+}
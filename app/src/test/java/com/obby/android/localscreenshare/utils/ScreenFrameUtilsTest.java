@@ -0,0 +1,162 @@
+package com.obby.android.localscreenshare.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Size;
+
+import com.google.protobuf.ByteString;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenEncoding;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenFrame;
+import com.obby.android.localscreenshare.grpc.screenstream.ScreenTile;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(RobolectricTestRunner.class)
+public class ScreenFrameUtilsTest {
+    @Test
+    public void mergeKeepsStripesPartiallyCoveredByDelta() {
+        final ScreenFrame keyFrame = ScreenFrame.newBuilder()
+            .setTimestamp(1L)
+            .setKeyFrame(true)
+            .setWidth(256)
+            .setHeight(256)
+            .addTiles(tile(0, 0, 256, 128, "stripe0"))
+            .addTiles(tile(0, 128, 256, 128, "stripe1"))
+            .build();
+        final ScreenFrame deltaFrame = ScreenFrame.newBuilder()
+            .setTimestamp(2L)
+            .addTiles(tile(0, 0, 128, 128, "delta"))
+            .build();
+
+        final ScreenFrame frame = ScreenFrameUtils.merge(keyFrame, deltaFrame);
+
+        assertTrue(ScreenFrameUtils.isKeyFrame(frame));
+        assertEquals(2L, frame.getTimestamp());
+        assertEquals(256, frame.getWidth());
+        assertEquals(256, frame.getHeight());
+        assertEquals(List.of("stripe0", "stripe1", "delta"), getTileData(frame));
+    }
+
+    @Test
+    public void mergeDropsTilesFullyCoveredByNewerTile() {
+        final ScreenFrame frame = ScreenFrame.newBuilder()
+            .addTiles(tile(0, 0, 128, 128, "old0"))
+            .addTiles(tile(128, 0, 128, 128, "old1"))
+            .addTiles(tile(0, 128, 256, 128, "old2"))
+            .build();
+        final ScreenFrame newFrame = ScreenFrame.newBuilder()
+            .addTiles(tile(0, 0, 128, 128, "new0"))
+            .addTiles(tile(0, 128, 256, 256, "new1"))
+            .build();
+
+        assertEquals(List.of("old1", "new0", "new1"), getTileData(ScreenFrameUtils.merge(frame, newFrame)));
+    }
+
+    @Test
+    public void mergeReplacesTilesWithoutBoundsByOrigin() {
+        final ScreenFrame frame = ScreenFrame.newBuilder()
+            .addTiles(ScreenTile.newBuilder().setLeft(0).setTop(0).setData(ByteString.copyFromUtf8("old0")))
+            .addTiles(ScreenTile.newBuilder().setLeft(128).setTop(0).setData(ByteString.copyFromUtf8("old1")))
+            .build();
+        final ScreenFrame newFrame = ScreenFrame.newBuilder()
+            .addTiles(ScreenTile.newBuilder().setLeft(0).setTop(0).setData(ByteString.copyFromUtf8("new0")))
+            .build();
+
+        assertEquals(List.of("old1", "new0"), getTileData(ScreenFrameUtils.merge(frame, newFrame)));
+    }
+
+    @Test
+    public void mergeReturnsNewKeyFrame() {
+        final ScreenFrame frame = ScreenFrame.newBuilder().addTiles(tile(0, 0, 128, 128, "old")).build();
+        final ScreenFrame newFrame = ScreenFrame.newBuilder()
+            .setData(ByteString.copyFromUtf8("key"))
+            .build();
+
+        assertSame(newFrame, ScreenFrameUtils.merge(frame, newFrame));
+        assertSame(frame, ScreenFrameUtils.merge(null, frame));
+    }
+
+    @Test
+    public void keyFrameOnlyEncodingIsServerInternal() {
+        assertTrue(ScreenFrameUtils.isKeyFrameOnly(ScreenFrameUtils.KEY_FRAME_ONLY_ENCODING));
+        assertFalse(ScreenFrameUtils.isKeyFrameOnly(ScreenEncoding.getDefaultInstance()));
+        assertFalse(ScreenFrameUtils.isKeyFrameOnly(ScreenEncoding.newBuilder().setQuality(100).build()));
+    }
+
+    @Test
+    public void getJpegSizeReadsFrameHeader() {
+        assertEquals(new Size(1080, 2400), ScreenFrameUtils.getJpegSize(jpeg(
+            segment(0xe0, 'J', 'F', 'I', 'F', 0), segment(0xc4, 0, 0), sof(0xc0, 1080, 2400))));
+        assertEquals(new Size(640, 480), ScreenFrameUtils.getJpegSize(jpeg(sof(0xc2, 640, 480))));
+    }
+
+    @Test
+    public void getJpegSizeSkipsFillBytes() {
+        assertEquals(new Size(300, 200), ScreenFrameUtils.getJpegSize(jpeg(new byte[]{(byte) 0xff, (byte) 0xff},
+            segment(0xdb, 0), sof(0xc1, 300, 200))));
+    }
+
+    @Test
+    public void getJpegSizeRejectsInvalidData() {
+        assertNull(ScreenFrameUtils.getJpegSize(ByteString.EMPTY));
+        assertNull(ScreenFrameUtils.getJpegSize(ByteString.copyFromUtf8("not a jpeg")));
+        assertNull(ScreenFrameUtils.getJpegSize(jpeg(segment(0xda, 0), sof(0xc0, 640, 480))));
+        assertNull(ScreenFrameUtils.getJpegSize(jpeg(segment(0xe0, 0))));
+        final byte[] sof = sof(0xc0, 640, 480);
+        assertNull(ScreenFrameUtils.getJpegSize(jpeg(Arrays.copyOf(sof, 7))));
+    }
+
+    private static ScreenTile tile(final int left, final int top, final int width, final int height,
+        final String data) {
+        return ScreenTile.newBuilder()
+            .setLeft(left)
+            .setTop(top)
+            .setWidth(width)
+            .setHeight(height)
+            .setData(ByteString.copyFromUtf8(data))
+            .build();
+    }
+
+    private static ByteString jpeg(final byte[]... segments) {
+        final ByteString.Output output = ByteString.newOutput();
+        output.write(0xff);
+        output.write(0xd8);
+        for (final byte[] segment : segments) {
+            output.write(segment, 0, segment.length);
+        }
+        return output.toByteString();
+    }
+
+    private static byte[] segment(final int marker, final int... payload) {
+        final byte[] segment = new byte[payload.length + 4];
+        segment[0] = (byte) 0xff;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) ((payload.length + 2) >> 8);
+        segment[3] = (byte) (payload.length + 2);
+        for (int i = 0; i < payload.length; i++) {
+            segment[i + 4] = (byte) payload[i];
+        }
+        return segment;
+    }
+
+    private static byte[] sof(final int marker, final int width, final int height) {
+        return segment(marker, 8, height >> 8, height, width >> 8, width, 1, 1, 0x11, 0);
+    }
+
+    private static List<String> getTileData(final ScreenFrame frame) {
+        return frame.getTilesList()
+            .stream()
+            .map(tile -> tile.getData().toStringUtf8())
+            .collect(Collectors.toList());
+    }
+}